@@ -0,0 +1,80 @@
+package cs321.btree;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Filename: BTreeCacheBenchmark.java
+ * Cost of a hit and of an eviction in a full BTreeCache for every
+ * replacement policy. A hit looks up a node that is in the cache, an
+ * eviction adds a node that never was, so the policy has to pick a
+ * victim. The cached objects all share one node, only the bookkeeping
+ * of the cache is measured. Scores are per hit and per eviction.
+ *
+ * @author Brian Heleker
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BTreeCacheBenchmark {
+	private static final int LOOKUPS = 1024;
+
+	@Param({"lru", "clock", "2q", "arc"})
+	public String policy;
+
+	@Param({"100", "1000"})
+	public int size;
+
+	private BTreeCache cache;
+	private BTreeNode node;
+	private long[] resident;
+	private long nextAddress;
+
+	@Setup
+	public void setup() {
+		cache = new BTreeCache(size, CachePolicy.create(policy, size));
+		node = new BTreeNode(102, 0);
+		for(long address = 0; address < size; address++) {
+			cache.put(new BTreeCacheObject(address, node));
+		}
+		nextAddress = size;
+		Random random = new Random(321);
+		resident = new long[LOOKUPS];
+		for(int i = 0; i < LOOKUPS; i++) {
+			resident[i] = random.nextInt(size);
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(LOOKUPS)
+	public void hit(Blackhole blackhole) {
+		for(long address : resident) {
+			blackhole.consume(cache.get(address));
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(LOOKUPS)
+	public void evict(Blackhole blackhole) {
+		for(int i = 0; i < LOOKUPS; i++) {
+			blackhole.consume(cache.put(new BTreeCacheObject(nextAddress++, node)));
+		}
+	}
+}
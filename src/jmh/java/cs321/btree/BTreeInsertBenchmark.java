@@ -0,0 +1,79 @@
+package cs321.btree;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Filename: BTreeInsertBenchmark.java
+ * Inserts per second into a tree on disk by degree and cache size, a
+ * cache size of 0 runs without a cache. Every iteration starts a new
+ * tree, the keys are random 31-base k-mers taken in turn from a fixed
+ * set, so after the first round every insert adds to a key that is
+ * already in the tree, as it does for the k-mers of a genome.
+ *
+ * @author Harry Nguyen
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BTreeInsertBenchmark {
+	private static final int KEYS = 1 << 16;
+
+	@Param({"10", "50", "102"})
+	public int degree;
+
+	@Param({"0", "100", "1000"})
+	public int cacheSize;
+
+	private long[] keys;
+	private File file;
+	private BTree tree;
+	private int next;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		Random random = new Random(321);
+		keys = new long[KEYS];
+		for(int i = 0; i < KEYS; i++) {
+			keys[i] = random.nextLong() >>> 2; // 31-base k-mers use 62 bits
+		}
+	}
+
+	@Setup(Level.Iteration)
+	public void openTree() throws IOException {
+		file = File.createTempFile("BTreeInsertBenchmark", ".btree");
+		file.delete(); // the tree creates the file with a new header
+		tree = new BTree(degree, 31, file, cacheSize > 0, cacheSize);
+		next = 0;
+	}
+
+	@TearDown(Level.Iteration)
+	public void closeTree() throws IOException {
+		tree.close();
+		file.delete();
+	}
+
+	@Benchmark
+	public void insert() throws IOException {
+		tree.insert(keys[next++ & (KEYS - 1)]);
+	}
+}
@@ -0,0 +1,96 @@
+package cs321.btree;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Filename: DumpSQLBenchmark.java
+ * Rows per second written by dumpSQL into a SQLite database, with and
+ * without the bulk-load pragmas of --sqlpragmas. The sequences table is
+ * dropped and created again before every dump, outside of the measured
+ * time. Needs the SQLite JDBC driver on the class path.
+ *
+ * @author Harry Nguyen
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class DumpSQLBenchmark {
+	private static final int ROWS = 100000;
+
+	@Param({"false", "true"})
+	public boolean pragmas;
+
+	private File treeFile;
+	private File databaseFile;
+	private BTree tree;
+	private Connection connection;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException, SQLException {
+		treeFile = File.createTempFile("DumpSQLBenchmark", ".btree");
+		treeFile.delete();
+		tree = new BTree(0, 16, treeFile);
+		long[] keys = new long[ROWS];
+		int[] frequencies = new int[ROWS];
+		for(int i = 0; i < ROWS; i++) {
+			keys[i] = 37L * i;
+			frequencies[i] = i % 7 + 1;
+		}
+		tree.bulkLoad(keys, frequencies);
+		tree.closeTree();
+		databaseFile = File.createTempFile("DumpSQLBenchmark", ".db");
+		connection = DriverManager.getConnection("jdbc:sqlite:" + databaseFile.getPath());
+		if(pragmas) {
+			try(Statement statement = connection.createStatement()) {
+				statement.execute("PRAGMA journal_mode = OFF");
+				statement.execute("PRAGMA synchronous = OFF");
+			}
+		}
+	}
+
+	@Setup(Level.Invocation)
+	public void createTable() throws SQLException {
+		try(Statement statement = connection.createStatement()) {
+			statement.executeUpdate("drop table if exists sequences");
+			statement.executeUpdate("CREATE table sequences (DNA string, frequency integer)");
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException, SQLException {
+		connection.close();
+		tree.close();
+		treeFile.delete();
+		databaseFile.delete();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(ROWS)
+	public long dumpSQL() throws SQLException, IOException {
+		return tree.dumpSQL(connection);
+	}
+}
@@ -0,0 +1,100 @@
+package cs321.btree;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Filename: NodeSearchBenchmark.java
+ * Cost of finding a key inside one full node, 2t-1 keys, for the linear
+ * scan the tree used before and for findKey on a BTreeNode and on a
+ * BTreeNodeView. Half of the looked up keys are in the node.
+ * Scores are per lookup.
+ *
+ * @author Harry Nguyen
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NodeSearchBenchmark {
+	private static final int LOOKUPS = 1024;
+
+	@Param({"10", "50", "102", "250", "500"})
+	public int degree;
+
+	private BTreeNode node;
+	private BTreeNodeView view;
+	private long[] lookups;
+
+	@Setup
+	public void setup() {
+		Random random = new Random(321);
+		int numKeys = 2 * degree - 1;
+		long[] keys = new long[numKeys];
+		for(int i = 0; i < numKeys; i++) {
+			keys[i] = random.nextLong() >>> 2; // 31-base k-mers use 62 bits
+		}
+		Arrays.sort(keys);
+
+		node = new BTreeNode(degree, 0);
+		node.setIsLeaf(true);
+		node.setNumKeys(numKeys);
+		for(int i = 1; i <= numKeys; i++) {
+			node.keys[i] = keys[i - 1];
+			node.frequencies[i] = 1;
+		}
+		view = new BTreeNodeView(8 + numKeys * 12 + (numKeys + 1) * 8);
+		node.serialize(view.getPage());
+		view.wrap(0);
+
+		lookups = new long[LOOKUPS];
+		for(int i = 0; i < LOOKUPS; i++) {
+			lookups[i] = i % 2 == 0 ? keys[random.nextInt(numKeys)] : random.nextLong() >>> 2;
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(LOOKUPS)
+	public void linearScan(Blackhole blackhole) {
+		for(long key : lookups) {
+			int i = 1;
+			while(i <= node.getNumKeys() && key > node.keys[i]) {
+				i++;
+			}
+			blackhole.consume(i);
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(LOOKUPS)
+	public void findKeyNode(Blackhole blackhole) {
+		for(long key : lookups) {
+			blackhole.consume(node.findKey(key));
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(LOOKUPS)
+	public void findKeyView(Blackhole blackhole) {
+		for(long key : lookups) {
+			blackhole.consume(view.findKey(key));
+		}
+	}
+}
@@ -0,0 +1,56 @@
+package cs321.common;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Filename: BenchmarkRunner.java
+ * Runs the JMH benchmarks of the btree, create and search packages and
+ * writes their scores as JSON to build/reports/jmh/results.json, so runs
+ * of different releases can be compared. The arguments are regular
+ * expressions choosing the benchmarks, for example "BTreeCache" or
+ * "search\..*", all benchmarks run when there are none. The results file
+ * can be changed with -Djmh.results=<file>.
+ *
+ * The benchmark classes, JMH and the SQLite driver have to be on the
+ * class path.
+ *
+ * @author Harry Nguyen
+ */
+public class BenchmarkRunner
+{
+    public static final String RESULTS_FILE = "build/reports/jmh/results.json";
+
+    /**
+     * Main driver of the benchmarks
+     * @param args - regular expressions of the benchmarks to run
+     * @throws RunnerException - Throws runner exception if a benchmark fails
+     * @throws IOException - Throws IO exception if the report directory can not be created
+     */
+    public static void main(String[] args) throws RunnerException, IOException
+    {
+        File results = new File(System.getProperty("jmh.results", RESULTS_FILE));
+        if (results.getAbsoluteFile().getParentFile() != null) {
+            Files.createDirectories(results.getAbsoluteFile().getParentFile().toPath());
+        }
+        ChainedOptionsBuilder options = new OptionsBuilder()
+            .resultFormat(ResultFormatType.JSON)
+            .result(results.getPath())
+            .shouldFailOnError(true);
+        if (args.length == 0) {
+            options.include("cs321\\..*Benchmark");
+        }
+        for (String include : args) {
+            options.include(include);
+        }
+        new Runner(options.build()).run();
+        System.out.println("Benchmark results written to " + results);
+    }
+}
@@ -0,0 +1,117 @@
+package cs321.create;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Filename: GenBankParserBenchmark.java
+ * Bases per second read from a GenBank file: parsing the ORIGIN blocks
+ * only, parsing and encoding the k-mers on one thread, and counting the
+ * k-mers with the parallel counter. The file is made up of random records
+ * laid out like the ones of NCBI, 60 bases per line in groups of 10.
+ *
+ * @author Joshua Corrales
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GenBankParserBenchmark
+{
+    private static final int RECORDS = 64;
+    private static final int BASES_PER_RECORD = 1 << 16;
+    private static final int BASES = RECORDS * BASES_PER_RECORD;
+    private static final char[] BASE_CHARS = {'a', 'c', 'g', 't'};
+
+    @Param({"7", "31"})
+    public int length;
+
+    private File file;
+
+    @Setup
+    public void setup() throws IOException
+    {
+        file = File.createTempFile("GenBankParserBenchmark", ".gbk");
+        Random random = new Random(321);
+        try (Writer writer = new BufferedWriter(new FileWriter(file))) {
+            for (int r = 0; r < RECORDS; r++) {
+                writer.write("LOCUS       RECORD" + r + "  " + BASES_PER_RECORD + " bp    DNA     linear   PRI\n");
+                writer.write("FEATURES             Location/Qualifiers\n");
+                writer.write("ORIGIN      \n");
+                for (int i = 0; i < BASES_PER_RECORD; i += 60) {
+                    writer.write(String.format("%9d", i + 1));
+                    for (int j = i; j < Math.min(i + 60, BASES_PER_RECORD); j++) {
+                        if ((j - i) % 10 == 0) {
+                            writer.write(' ');
+                        }
+                        writer.write(BASE_CHARS[random.nextInt(4)]);
+                    }
+                    writer.write('\n');
+                }
+                writer.write("//\n");
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        file.delete();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BASES)
+    public void parse(Blackhole blackhole) throws IOException
+    {
+        GenBankParser parser = new GenBankParser(file);
+        parser.parse(new BaseConsumer()
+        {
+            @Override
+            public void addCode(int code)
+            {
+                blackhole.consume(code);
+            }
+
+            @Override
+            public void endSequence()
+            {
+            }
+        });
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BASES)
+    public void parseAndEncode(Blackhole blackhole) throws IOException
+    {
+        new GenBankParser(file).parse(new KmerEncoder(length, blackhole::consume));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BASES)
+    public void countParallel(Blackhole blackhole) throws IOException
+    {
+        new ParallelKmerCounter(file, length, Runtime.getRuntime().availableProcessors()).count((kmer, count) -> blackhole.consume(kmer));
+    }
+}
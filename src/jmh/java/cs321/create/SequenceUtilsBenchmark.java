@@ -0,0 +1,219 @@
+package cs321.create;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import cs321.common.KmerDecoder;
+
+/**
+ * Filename: SequenceUtilsBenchmark.java
+ * Cost of encoding a query and of finding its complement with the
+ * SequenceUtils methods and with the String based versions they replaced,
+ * which are kept here as they were. The old getComplement parses its
+ * result as a decimal number, so it only works up to 9 bases and the
+ * lengths stay within that. The loop the search used to flip the bits of
+ * a query is measured as well, and so is turning a sequence back into
+ * bases as a string and as a dump line. Scores are per sequence.
+ *
+ * @author Harry Nguyen
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SequenceUtilsBenchmark
+{
+    private static final int SEQUENCES = 1024;
+    private static final char[] BASES = {'a', 'c', 'g', 't'};
+
+    @Param({"5", "9"})
+    public int length;
+
+    private String[] strings;
+    private long[] sequences;
+    private KmerDecoder decoder;
+    private OutputStream discard;
+
+    @Setup
+    public void setup()
+    {
+        Random random = new Random(321);
+        strings = new String[SEQUENCES];
+        sequences = new long[SEQUENCES];
+        for (int i = 0; i < SEQUENCES; i++) {
+            char[] bases = new char[length];
+            for (int j = 0; j < length; j++) {
+                bases[j] = BASES[random.nextInt(4)];
+            }
+            strings[i] = new String(bases);
+            sequences[i] = SequenceUtils.DNAStringToLong(strings[i]);
+        }
+        decoder = new KmerDecoder(length);
+        discard = OutputStream.nullOutputStream();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SEQUENCES)
+    public void encodeTable(Blackhole blackhole)
+    {
+        for (String string : strings) {
+            blackhole.consume(SequenceUtils.DNAStringToLong(string));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SEQUENCES)
+    public void encodeLegacy(Blackhole blackhole)
+    {
+        for (String string : strings) {
+            blackhole.consume(legacyDNAStringToLong(string));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SEQUENCES)
+    public void reverseComplement(Blackhole blackhole)
+    {
+        for (long sequence : sequences) {
+            blackhole.consume(SequenceUtils.reverseComplement(sequence, length));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SEQUENCES)
+    public void complementLegacy(Blackhole blackhole)
+    {
+        for (long sequence : sequences) {
+            blackhole.consume(legacyGetComplement(sequence, length));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SEQUENCES)
+    public void complementSearchLoop(Blackhole blackhole)
+    {
+        for (long sequence : sequences) {
+            long complement = sequence;
+            for (int j = 0; j < length * 2; j++) {
+                complement = complement ^ (1 << j);
+            }
+            blackhole.consume(complement);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SEQUENCES)
+    public void canonical(Blackhole blackhole)
+    {
+        for (long sequence : sequences) {
+            blackhole.consume(SequenceUtils.canonical(sequence, length));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SEQUENCES)
+    public void decodeString(Blackhole blackhole)
+    {
+        for (long sequence : sequences) {
+            blackhole.consume(SequenceUtils.longToDNAString(sequence, length));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SEQUENCES)
+    public void decodeLine() throws IOException
+    {
+        for (long sequence : sequences) {
+            decoder.writeLine(sequence, 1, discard);
+        }
+    }
+
+    /**
+     * DNAStringToLong as it was before the lookup table
+     * @param DNAString - DNA sequence to process
+     * @return Long integer representation of DNA String
+     */
+    private static long legacyDNAStringToLong(String DNAString)
+    {
+        String binDNA = "";
+        char[] DNAcharArray = DNAString.toLowerCase().toCharArray();
+        for (int i = 0; i < DNAString.length(); i++) {
+            switch (DNAcharArray[i]) {
+                case 'a':
+                    binDNA = binDNA.concat("00");
+                    break;
+                case 't':
+                    binDNA = binDNA.concat("11");
+                    break;
+                case 'c':
+                    binDNA = binDNA.concat("01");
+                    break;
+                case 'g':
+                    binDNA = binDNA.concat("10");
+                    break;
+            }
+        }
+        return Long.parseLong(binDNA, 2);
+    }
+
+    /**
+     * getComplement as it was before the bit operations, not reversed and
+     * parsed as a decimal number
+     * @param sequence - Long integer to convert into sequence
+     * @param seqLength - Length of the sequence to parse
+     * @return digits of the complement read as a decimal number
+     */
+    private static long legacyGetComplement(long sequence, int seqLength)
+    {
+        String[] binArray = new String[31];
+        String complement = Long.toBinaryString(sequence);
+        if (complement.length() % 2 != 0) {
+            complement = "0".concat(complement);
+        }
+        while (complement.length() < seqLength * 2) {
+            complement = "00".concat(complement);
+        }
+        for (int i = 0; i < 31; i++) {
+            binArray[i] = "00";
+        }
+        for (int i = 0; 2 * i < complement.length(); i++) {
+            binArray[31 - seqLength + i] = complement.substring(i * 2, (i * 2) + 2);
+        }
+        complement = "";
+        for (int i = 31 - seqLength; i < 31; i++) {
+            switch (binArray[i]) {
+                case "00":
+                    complement = complement.concat("11");
+                    break;
+                case "11":
+                    complement = complement.concat("00");
+                    break;
+                case "01":
+                    complement = complement.concat("10");
+                    break;
+                case "10":
+                    complement = complement.concat("01");
+                    break;
+            }
+        }
+        return Long.parseLong(complement);
+    }
+}
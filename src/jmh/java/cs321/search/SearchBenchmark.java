@@ -0,0 +1,119 @@
+package cs321.search;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import cs321.btree.BTree;
+
+/**
+ * Filename: SearchBenchmark.java
+ * Latency of looking up k-mers in a tree on disk, the way
+ * GeneBankSearchBTree does. Cold lookups go through a tree without a
+ * cache, so every page on the path is read from the file again (the
+ * operating system may still hold the file in memory). Warm lookups go
+ * through a tree whose cache holds every page. The batch lookup sorts
+ * the queries and reads every page once for all of them, as the search
+ * command does. Half of the queries are in the tree. Scores are per query.
+ *
+ * @author Brian Heleker
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SearchBenchmark
+{
+    private static final int QUERIES = 1024;
+    private static final int WARM_CACHE_PAGES = 5000;
+
+    @Param({"262144"})
+    public int keys;
+
+    @Param({"0", "102"})
+    public int degree;
+
+    private File file;
+    private BTree coldTree;
+    private BTree warmTree;
+    private long[] queries;
+
+    @Setup
+    public void setup() throws IOException
+    {
+        file = File.createTempFile("SearchBenchmark", ".btree");
+        file.delete();
+        BTree tree = new BTree(degree, 16, file);
+        long[] sorted = new long[keys];
+        int[] frequencies = new int[keys];
+        for (int i = 0; i < keys; i++) {
+            sorted[i] = 2L * i * 1021; // odd keys are never in the tree
+            frequencies[i] = 1;
+        }
+        tree.bulkLoad(sorted, frequencies);
+        tree.closeTree();
+        tree.close();
+
+        coldTree = new BTree(0, 0, file);
+        warmTree = new BTree(0, 0, file, true, WARM_CACHE_PAGES);
+        for (long key : sorted) {
+            warmTree.searchTwo(key); // loads every page into the cache
+        }
+        Random random = new Random(321);
+        queries = new long[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            queries[i] = sorted[random.nextInt(keys)] + (i % 2);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException
+    {
+        coldTree.close();
+        warmTree.close();
+        file.delete();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(QUERIES)
+    public void searchCold(Blackhole blackhole) throws IOException
+    {
+        for (long query : queries) {
+            blackhole.consume(coldTree.searchTwo(query));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(QUERIES)
+    public void searchWarm(Blackhole blackhole) throws IOException
+    {
+        for (long query : queries) {
+            blackhole.consume(warmTree.searchTwo(query));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(QUERIES)
+    public long[] searchBatchCold() throws IOException
+    {
+        return coldTree.searchBatch(queries);
+    }
+}
@@ -0,0 +1,141 @@
+package cs321.btree;
+
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+
+/**
+ * Filename: ARCCachePolicy.java
+ * Adaptive replacement cache (Megiddo and Modha). Resident addresses are
+ * split between T1 (seen once recently) and T2 (seen at least twice), and
+ * the ghost lists B1 and B2 remember addresses evicted from each. A miss
+ * that hits a ghost list moves the target size p of T1, so the policy
+ * shifts between recency and frequency to follow the workload.
+ *
+ * @author Brian Heleker
+ */
+public class ARCCachePolicy implements CachePolicy
+{
+    private final int size;
+    private int target; // p, target size of T1
+    private final LinkedHashSet<Long> t1;
+    private final LinkedHashSet<Long> t2;
+    private final LinkedHashSet<Long> b1;
+    private final LinkedHashSet<Long> b2;
+
+    /**
+     * Constructor for the policy
+     * @param size - number of nodes the cache can hold
+     */
+    public ARCCachePolicy(int size)
+    {
+        this.size = size;
+        t1 = new LinkedHashSet<Long>();
+        t2 = new LinkedHashSet<Long>();
+        b1 = new LinkedHashSet<Long>();
+        b2 = new LinkedHashSet<Long>();
+    }
+
+    @Override
+    public void hit(long address)
+    {
+        if (t1.remove(address) || t2.remove(address))
+        {
+            t2.add(address);
+        }
+    }
+
+    @Override
+    public long miss(long address)
+    {
+        long victim = NO_EVICTION;
+        if (b1.contains(address))
+        {
+            target = Math.min(size, target + Math.max(b2.size() / b1.size(), 1));
+            victim = replace(false);
+            b1.remove(address);
+            t2.add(address);
+            return victim;
+        }
+        if (b2.contains(address))
+        {
+            target = Math.max(0, target - Math.max(b1.size() / b2.size(), 1));
+            victim = replace(true);
+            b2.remove(address);
+            t2.add(address);
+            return victim;
+        }
+        if (t1.size() + b1.size() >= size)
+        {
+            if (t1.size() < size)
+            {
+                removeFirst(b1);
+                victim = replace(false);
+            }
+            else
+            {
+                victim = removeFirst(t1);
+            }
+        }
+        else if (t1.size() + t2.size() + b1.size() + b2.size() >= size)
+        {
+            if (t1.size() + t2.size() + b1.size() + b2.size() >= 2 * size)
+            {
+                removeFirst(b2);
+            }
+            victim = replace(false);
+        }
+        t1.add(address);
+        return victim;
+    }
+
+    /**
+     * Evicting the eldest address of T1 or T2 into its ghost list, once the cache is full
+     * @param inB2 - true if the missed address was found in B2
+     * @return - evicted address, or NO_EVICTION while the cache has room
+     */
+    private long replace(boolean inB2)
+    {
+        if (t1.size() + t2.size() < size)
+        {
+            return NO_EVICTION;
+        }
+        if (!t1.isEmpty() && (t1.size() > target || (inB2 && t1.size() == target) || t2.isEmpty()))
+        {
+            long victim = removeFirst(t1);
+            b1.add(victim);
+            return victim;
+        }
+        long victim = removeFirst(t2);
+        b2.add(victim);
+        return victim;
+    }
+
+    /**
+     * Removing the eldest address of a list
+     * @param list - list to remove from
+     * @return - the removed address
+     */
+    private static long removeFirst(LinkedHashSet<Long> list)
+    {
+        Iterator<Long> eldest = list.iterator();
+        long address = eldest.next();
+        eldest.remove();
+        return address;
+    }
+
+    @Override
+    public void clear()
+    {
+        target = 0;
+        t1.clear();
+        t2.clear();
+        b1.clear();
+        b2.clear();
+    }
+
+    @Override
+    public String getName()
+    {
+        return "ARC";
+    }
+}
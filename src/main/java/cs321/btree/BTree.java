@@ -1,18 +1,24 @@
 package cs321.btree;
 
+import java.io.BufferedOutputStream;
 import java.io.Closeable;
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.PrintStream;
+import java.io.OutputStream;
 import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.SQLException;
-import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.Queue;
 
+import cs321.common.KmerDecoder;
 import cs321.common.ParseArgumentException;
 import cs321.common.ParseArgumentUtils;
 
@@ -41,6 +47,28 @@ public class BTree implements BTreeInterface, Closeable
 	private long rootAddress;
 	private BTreeNode root;
 	private boolean usingCache;
+	private final ThreadLocal<ArrayList<BTreeNodeView>> views = ThreadLocal.withInitial(ArrayList::new); // one reusable page view per tree level and thread
+	private BTreeWriteBehind writeBehind; // null when pages are written on the calling thread
+	private boolean readOnly; // set by enableConcurrentReads
+	private BTreePageCache pageCache; // shared by the reader threads, may be null
+	private static final int SQL_BATCH_ROWS = 10000; // rows sent to the database at once by dumpSQL
+	private static final int SQL_COMMIT_ROWS = 100 * SQL_BATCH_ROWS; // rows committed at once by dumpSQL
+	private static final int DUMP_BUFFER_BYTES = 1 << 16;
+	public static final int FLAG_CANONICAL = 1; // keys are min(k-mer, reverse complement)
+	public static final int FLAG_VARINT_PAGES = 2; // pages are written by VarintPageCodec
+	public static final int FLAG_INCOMPLETE = 4; // set while keys are appended, still set if an append did not finish
+	private int flags; // stored in the metadata after nodeSize, 0 in files written before there were flags
+	public static final int DEFAULT_PAGE_SIZE = 4096;
+	public static final int MIN_PAGE_SIZE = 4096;
+	public static final int MAX_PAGE_SIZE = 65536;
+	private static final long HEADER_MAGIC = 0x4353333231425452L; // "CS321BTR", larger than any root address of a legacy file
+	private static final int HEADER_VERSION = 1;
+	private static final int HEADER_SIZE = 48; // bytes of the header that are used, it fills the whole first page
+	private static final int LEGACY_METADATA_SIZE = 100; // the first page of a file without a header follows the metadata
+	private int version; // version of the header, 0 for files written before there was one
+	private long firstPage; // address of the first page, pages follow it back to back
+	private PageCodec codec;
+	private boolean appending; // set by beginAppend, closeTree forces the pages before the header
 	
 	/**
 	 * 
@@ -51,34 +79,7 @@ public class BTree implements BTreeInterface, Closeable
 	 * @param f - Name of file to process
 	 */
 	public BTree(int degree, int sequenceLength, File f) {
-		this.degree = degree;
-		if(degree == 0) {
-			this.degree = 102;
-		}
-		this.sequenceLength = sequenceLength;
-		nodeSize = 4096;
-		rootAddress = 100;
-		nextAddress = 4196;
-		buffer = ByteBuffer.allocateDirect(nodeSize);
-		
-		try {
-			if (!f.exists()) {
-				f.createNewFile();
-				raf = new RandomAccessFile(f, "rw");
-				file = raf.getChannel();
-				root = new BTreeNode(degree, rootAddress);
-				root.setIsLeaf(true);
-			} else {
-				raf = new RandomAccessFile(f, "rw");
-				file = raf.getChannel();
-				readMetaData();
-				root = diskRead(rootAddress);
-			}
-		} catch (FileNotFoundException e) {
-			System.err.println(e);
-		} catch(IOException e) {
-			System.err.println(e);
-		}
+		this(degree, sequenceLength, f, false, 0);
 	}
 	
 	/**
@@ -91,30 +92,91 @@ public class BTree implements BTreeInterface, Closeable
 	 * @param cacheSize - Size of cache
 	 */
 	public BTree(int degree, int sequenceLength, File f, boolean useCache, int cacheSize) {
+		this(degree, sequenceLength, f, useCache, cacheSize, "lru");
+	}
+	
+	/**
+	 * Overloaded constructor of BTree with a cache replacement policy
+	 * 
+	 * @param degree - degree of sequence to process
+	 * @param sequenceLength - Length of DNA sequence to process
+	 * @param f - Name of file to process
+	 * @param useCache - Boolean value that determines if cache will be used
+	 * @param cacheSize - Size of cache
+	 * @param cachePolicy - replacement policy of the cache: lru, clock, 2q or arc
+	 */
+	public BTree(int degree, int sequenceLength, File f, boolean useCache, int cacheSize, String cachePolicy) {
+		this(degree, sequenceLength, f, useCache, cacheSize, cachePolicy, "fixed");
+	}
+	
+	/**
+	 * Overloaded constructor of BTree with a cache replacement policy and a page format.
+	 * The page format of a new file is kept in its header, an existing file is
+	 * read with the format it was written with.
+	 * 
+	 * @param degree - degree of sequence to process, 0 for the largest degree
+	 * a page can hold
+	 * @param sequenceLength - Length of DNA sequence to process
+	 * @param f - Name of file to process
+	 * @param useCache - Boolean value that determines if cache will be used
+	 * @param cacheSize - Size of cache
+	 * @param cachePolicy - replacement policy of the cache: lru, clock, 2q or arc
+	 * @param pageCodec - format of the node pages of a new file: fixed or varint
+	 */
+	public BTree(int degree, int sequenceLength, File f, boolean useCache, int cacheSize, String cachePolicy, String pageCodec) {
+		this(degree, sequenceLength, f, useCache, cacheSize, cachePolicy, pageCodec, DEFAULT_PAGE_SIZE);
+	}
+	
+	/**
+	 * Overloaded constructor of BTree with a page size. A new file starts with
+	 * a header holding the page size, degree, sequence length, page format and
+	 * flags, so an existing file is opened with the values of its header and
+	 * the degree, sequence length, page format and page size given here are
+	 * not used. Files written before there was a header are 4096 byte pages
+	 * and still need their degree and sequence length.
+	 * 
+	 * @param degree - degree of sequence to process, 0 for the largest degree
+	 * a page can hold
+	 * @param sequenceLength - Length of DNA sequence to process
+	 * @param f - Name of file to process
+	 * @param useCache - Boolean value that determines if cache will be used
+	 * @param cacheSize - Size of cache
+	 * @param cachePolicy - replacement policy of the cache: lru, clock, 2q or arc
+	 * @param pageCodec - format of the node pages of a new file: fixed or varint
+	 * @param pageSize - size of the pages of a new file, a power of 2 from 4096 to 65536
+	 */
+	public BTree(int degree, int sequenceLength, File f, boolean useCache, int cacheSize, String cachePolicy, String pageCodec, int pageSize) {
+		if(pageSize < MIN_PAGE_SIZE || pageSize > MAX_PAGE_SIZE || Integer.bitCount(pageSize) != 1) {
+			throw new IllegalArgumentException("Invalid page size " + pageSize + ", it must be a power of 2 from " + MIN_PAGE_SIZE + " to " + MAX_PAGE_SIZE);
+		}
 		this.usingCache = useCache;
 		this.cacheSize = cacheSize;
-		cache = new BTreeCache(cacheSize);
-		this.degree = degree;
-		if(degree == 0) {
-			this.degree = 102;
+		if(useCache) {
+			cache = new BTreeCache(cacheSize, CachePolicy.create(cachePolicy, Math.max(cacheSize, 1)));
 		}
+		this.degree = degree;
 		this.sequenceLength = sequenceLength;
-		nodeSize = 4096;
-		rootAddress = 100;
-		nextAddress = 4196;
-		buffer = ByteBuffer.allocateDirect(nodeSize);
 		
 		try {
 			if (!f.exists()) { // checking whether the file is existed or nto
 				f.createNewFile();
 				raf = new RandomAccessFile(f, "rw");
 				file = raf.getChannel();
-				root = new BTreeNode(degree, rootAddress);
+				version = HEADER_VERSION;
+				nodeSize = pageSize;
+				firstPage = pageSize; // the header fills the first page so every page is aligned
+				rootAddress = firstPage;
+				nextAddress = firstPage + nodeSize;
+				buffer = ByteBuffer.allocateDirect(nodeSize);
+				useCodec(pageCodec, degree);
+				root = new BTreeNode(this.degree, rootAddress);
 				root.setIsLeaf(true);
 			} else {
 				raf = new RandomAccessFile(f, "rw");
 				file = raf.getChannel();
-				readMetaData();
+				String codecName = readMetaData();
+				buffer = ByteBuffer.allocateDirect(nodeSize);
+				useCodec(codecName, this.degree);
 				root = diskRead(rootAddress);
 			}
 		} catch (FileNotFoundException e) { // throwing exceptions if file not found
@@ -124,6 +186,57 @@ public class BTree implements BTreeInterface, Closeable
 		}
 	}
 	
+	/**
+	 * 
+	 * Choosing the page format and the degree that fits it. Varint pages
+	 * hold more keys than fixed pages, a degree of 0 picks the largest
+	 * degree whose full nodes fit in a page.
+	 * 
+	 * @param name - fixed or varint
+	 * @param requestedDegree - degree asked for, 0 for the largest one
+	 */
+	private void useCodec(String name, int requestedDegree) {
+		codec = PageCodec.create(name, nodeSize, firstPage);
+		if(!codec.isFixedLayout()) {
+			flags |= FLAG_VARINT_PAGES;
+		}
+		int maxDegree = codec.maxDegree(nodeSize, sequenceLength);
+		if(requestedDegree > maxDegree) {
+			throw new IllegalArgumentException("Degree " + requestedDegree + " does not fit in " + nodeSize + " byte " + codec.getName() + " pages, the largest is " + maxDegree);
+		}
+		degree = requestedDegree == 0 ? maxDegree : requestedDegree;
+	}
+	
+	/**
+	 * 
+	 * get the size of the pages of the file
+	 * 
+	 * @return pageSize - in bytes
+	 */
+	public int getPageSize() {
+		return nodeSize;
+	}
+	
+	/**
+	 * 
+	 * get the format of the node pages
+	 * 
+	 * @return codec - fixed or varint page codec
+	 */
+	public PageCodec getPageCodec() {
+		return codec;
+	}
+	
+	/**
+	 * 
+	 * Making a page view for the format and degree of the tree
+	 * 
+	 * @return view - a new view that can be pointed at any page of the tree
+	 */
+	BTreeNodeView newView() {
+		return new BTreeNodeView(nodeSize, codec, degree);
+	}
+	
 	/**
 	 * 
 	 * Writing the BTree Node into disk 
@@ -132,10 +245,13 @@ public class BTree implements BTreeInterface, Closeable
 	 * @throws IOException - throwing exception if encountering issues
 	 */
 	public void diskWrite(BTreeNode n) throws IOException {
-		file.position(n.getAddress());
-		n.serialize(buffer);
+		if(writeBehind != null) {
+			writeBehind.write(n);
+			return;
+		}
+		codec.encode(n, buffer);
 		buffer.flip();
-		file.write(buffer);
+		writeFully(buffer, n.getAddress());
 	}
 
 	/**
@@ -147,20 +263,161 @@ public class BTree implements BTreeInterface, Closeable
 	 * @throws IOException - If IO is different from what is expected
 	 */
 	public BTreeNode diskRead(long address) throws IOException {
-		file.position(address);
-		buffer.clear();
-		file.read(buffer);
-		buffer.flip();
-		return new BTreeNode(address, buffer, degree);
+		readFully(buffer, address);
+		BTreeNode node = new BTreeNode(degree, address);
+		codec.decode(buffer, node);
+		return node;
+	}
+	
+	/**
+	 * 
+	 * Reading a page into a buffer from position 0, pages still waiting in the
+	 * write-behind queue are copied from memory
+	 * 
+	 * @param page - buffer the page is read into
+	 * @param address - the address that being read at
+	 * @throws IOException - If IO is different from what is expected
+	 */
+	private void readFully(ByteBuffer page, long address) throws IOException {
+		if(writeBehind != null && writeBehind.readInto(address, page)) {
+			return;
+		}
+		page.clear();
+		while(page.hasRemaining() && file.read(page, address + page.position()) > 0) {
+		}
+	}
+	
+	/**
+	 * 
+	 * Writing a buffer at an address without moving the channel position
+	 * 
+	 * @param data - bytes being written
+	 * @param address - the address that being written at
+	 * @throws IOException - If IO is different from what is expected
+	 */
+	private void writeFully(ByteBuffer data, long address) throws IOException {
+		long position = address;
+		while(data.hasRemaining()) {
+			position += file.write(data, position);
+		}
 	}
 	
+	/**
+	 * 
+	 * Handing node writes to a background thread. Nodes are serialized on the
+	 * calling thread and at most maxDirtyPages of them wait in memory, a
+	 * writer that finds them all in use waits for the flusher.
+	 * 
+	 * @param maxDirtyPages - number of pages that may wait in memory
+	 */
+	public void enableWriteBehind(int maxDirtyPages) {
+		if(writeBehind == null) {
+			writeBehind = new BTreeWriteBehind(file, codec, nodeSize, maxDirtyPages);
+		}
+	}
+	
+	/**
+	 * 
+	 * Switching the tree to read-only use by several threads at once. Every
+	 * pending write is done first, afterwards searchTwo, searchBatch and dump
+	 * read pages with positional reads into views owned by the calling thread,
+	 * optionally through a page cache shared by all threads, and inserts are
+	 * refused.
+	 * 
+	 * @param cachePages - size of the shared page cache, 0 for no cache
+	 * @throws IOException - Throws IO exception if the pending writes fail
+	 */
+	public void enableConcurrentReads(int cachePages) throws IOException {
+		if(usingCache) {
+			flushCache();
+		}
+		if(writeBehind != null) {
+			writeBehind.flush();
+		}
+		readOnly = true;
+		if(cachePages > 0) {
+			pageCache = new BTreePageCache(cachePages);
+		}
+	}
+	
+	/**
+	 * 
+	 * get the page cache shared by reader threads, used for its statistics
+	 * 
+	 * @return pageCache - null unless concurrent reads use a cache
+	 */
+	public BTreePageCache getPageCache() {
+		return pageCache;
+	}
+	
+	/**
+	 * 
+	 * get the write-behind queue of the tree, used for its statistics
+	 * 
+	 * @return writeBehind - null when writes are not done in the background
+	 */
+	public BTreeWriteBehind getWriteBehind() {
+		return writeBehind;
+	}
+	
+	/**
+	 * 
+	 * Reading a page into the reusable view of a level without creating a node
+	 * 
+	 * @param address - the address that being read at
+	 * @param level - depth of the page, every level has its own view
+	 * @return view - the view showing the page
+	 * @throws IOException - If IO is different from what is expected
+	 */
+	BTreeNodeView readPage(long address, int level) throws IOException {
+		ArrayList<BTreeNodeView> levels = views.get();
+		while(levels.size() <= level) {
+			levels.add(newView());
+		}
+		return readPage(levels.get(level), address);
+	}
+	
+	/**
+	 * 
+	 * Reading a page into a view, through the shared page cache when there is one
+	 * 
+	 * @param view - the view being pointed at the page
+	 * @param address - the address that being read at
+	 * @return view - the view showing the page
+	 * @throws IOException - If IO is different from what is expected
+	 */
+	BTreeNodeView readPage(BTreeNodeView view, long address) throws IOException {
+		if(pageCache != null) {
+			ByteBuffer page = pageCache.get(address);
+			if(page == null) {
+				page = ByteBuffer.allocate(nodeSize);
+				readFully(page, address);
+				page = pageCache.put(address, page);
+			}
+			view.wrap(page, address);
+			return view;
+		}
+		readFully(view.getPage(), address);
+		view.wrap(address);
+		return view;
+	}
+	
+	/**
+	 * 
+	 * Putting a changed node in the cache, it is written to disk when it is evicted
+	 * 
+	 * @param n - the node that being written
+	 * @return - the cached node
+	 * @throws IOException - Throws IO exception if IO is different from expectation
+	 */
 	public BTreeNode cacheWrite(BTreeNode n) throws IOException {
-		BTreeCacheObject insertNode = new BTreeCacheObject(n.getAddress(), n);
-		if(cache.getSize() == cacheSize && !cache.contains(n.getAddress())) {
-			BTreeNode insertionNode = cache.getEldest().getNode();
-			diskWrite(insertionNode);
+		BTreeCacheObject cached = cache.peek(n.getAddress()); // the read of the node already counted the reference
+		if(cached == null || cached.getNode() != n) {
+			cached = new BTreeCacheObject(n.getAddress(), n);
+			writeBack(cache.put(cached));
 		}
-		return cache.getObject(insertNode).getNode();
+		cached.setDirty(true);
+		return n;
 	}
 	
 	/**
@@ -172,17 +429,39 @@ public class BTree implements BTreeInterface, Closeable
 	 * @throws IOException - Throws IO exception if IO is different from expectation
 	 */
 	public BTreeNode cacheRead(long address) throws IOException {
-		BTreeCacheObject returnNode;
-		if(!cache.contains(address)) {
-			if(cache.getSize() == cacheSize) {
-				BTreeNode insertionNode = cache.getEldest().getNode();
-				diskWrite(insertionNode);
+		BTreeCacheObject cached = cache.get(address);
+		if(cached == null) {
+			cached = new BTreeCacheObject(address, diskRead(address));
+			writeBack(cache.put(cached));
+		}
+		return cached.getNode();
+	}
+	
+	/**
+	 * 
+	 * Writing a node that left the cache back to disk if it was changed
+	 * 
+	 * @param evicted - the evicted cache object, may be null
+	 * @throws IOException - Throws IO exception if IO is different from expectation
+	 */
+	private void writeBack(BTreeCacheObject evicted) throws IOException {
+		if(evicted != null && evicted.isDirty()) {
+			diskWrite(evicted.getNode());
+		}
+	}
+	
+	/**
+	 * 
+	 * Writing every changed node in the cache to disk, the nodes stay cached
+	 * 
+	 * @throws IOException - Throws IO exception if IO is different from expectation
+	 */
+	private void flushCache() throws IOException {
+		for(BTreeCacheObject cached : cache.getObjects()) {
+			if(cached.isDirty()) {
+				diskWrite(cached.getNode());
+				cached.setDirty(false);
 			}
-			returnNode = new BTreeCacheObject(address, diskRead(address));
-			cache.getObject(returnNode);
-			return returnNode.getNode();
-		} else {
-			return cache.getObject(address).getNode();
 		}
 	}
 	
@@ -193,9 +472,63 @@ public class BTree implements BTreeInterface, Closeable
 	 * @return node - the node that being allocated 
 	 */
 	public BTreeNode allocateNode() {
-		BTreeNode node = new BTreeNode(degree, nextAddress); 
-		nextAddress += nodeSize; 
-		return node; 
+		return new BTreeNode(degree, allocateAddress()); 
+	}
+	
+	/**
+	 * 
+	 * Reserving the next free page in the file
+	 * 
+	 * @return address - the address of the reserved page
+	 */
+	long allocateAddress() {
+		long address = nextAddress;
+		nextAddress += nodeSize;
+		return address;
+	}
+	
+	/**
+	 * 
+	 * Creating a bulk loader that fills this tree from keys that are already sorted.
+	 * The tree has to be empty.
+	 * 
+	 * @return loader - the bulk loader writing into this tree
+	 */
+	public BTreeBulkLoader bulkLoader() {
+		checkWritable();
+		if(!root.getIsLeaf() || root.getNumKeys() != 0) {
+			throw new IllegalStateException("Bulk loading requires an empty tree");
+		}
+		return new BTreeBulkLoader(this);
+	}
+	
+	/**
+	 * 
+	 * Bulk loading sorted keys and their frequencies into an empty tree
+	 * 
+	 * @param keys - keys in ascending order
+	 * @param frequencies - frequency of each key
+	 * @throws IOException - throwing exception if encountering issues
+	 */
+	public void bulkLoad(long[] keys, int[] frequencies) throws IOException {
+		BTreeBulkLoader loader = bulkLoader();
+		for(int i = 0; i < keys.length; i++) {
+			loader.add(keys[i], frequencies[i]);
+		}
+		loader.finish();
+	}
+	
+	/**
+	 * 
+	 * Installing the root produced by the bulk loader in the reserved root page
+	 * 
+	 * @param newRoot - the top node built by the bulk loader
+	 * @throws IOException - throwing exception if encountering issues
+	 */
+	void setBulkLoadedRoot(BTreeNode newRoot) throws IOException {
+		newRoot.setAddress(rootAddress);
+		root = newRoot;
+		diskWrite(root);
 	}
 	
 	/**
@@ -219,6 +552,66 @@ public class BTree implements BTreeInterface, Closeable
 		return sequenceLength;
 	}
 	
+	/**
+	 * 
+	 * get whether the tree holds canonical k-mers, the smaller of a k-mer
+	 * and its reverse complement, so both strands share one key
+	 * 
+	 * @return canonical - true if the canonical flag is set in the metadata
+	 */
+	public boolean isCanonical() {
+		return (flags & FLAG_CANONICAL) != 0;
+	}
+	
+	/**
+	 * 
+	 * set whether the tree holds canonical k-mers, before any key is
+	 * inserted. The flag is stored by closeTree().
+	 * 
+	 * @param canonical - true if only canonical k-mers are inserted
+	 */
+	public void setCanonical(boolean canonical) {
+		flags = canonical ? flags | FLAG_CANONICAL : flags & ~FLAG_CANONICAL;
+	}
+	
+	/**
+	 * 
+	 * get whether an append to the tree was started and did not finish, so
+	 * some of its pages may have been written and others not
+	 * 
+	 * @return incomplete - true if the incomplete flag is set in the metadata
+	 */
+	public boolean isIncomplete() {
+		return (flags & FLAG_INCOMPLETE) != 0;
+	}
+	
+	/**
+	 * 
+	 * Starting to add keys to a tree that was built before. The incomplete
+	 * flag is written to the metadata and forced to the disk before any page
+	 * changes. closeTree() forces the pages and then clears the flag with a
+	 * single write of the metadata, so the file is either marked incomplete
+	 * or holds every key of the append.
+	 * 
+	 * @throws IOException - Throws IO exception if the metadata can not be written
+	 */
+	public void beginAppend() throws IOException {
+		flags |= FLAG_INCOMPLETE;
+		createMetaData();
+		file.force(false);
+		appending = true;
+	}
+	
+	/**
+	 * 
+	 * get the cache of the tree, used for its statistics
+	 * 
+	 * @return cache - null when the tree does not use a cache
+	 */
+	public BTreeCache getCache() {
+		return cache;
+	}
+	
 	/**
 	 * 
 	 * get the filename of the file that being used. 
@@ -271,13 +664,36 @@ public class BTree implements BTreeInterface, Closeable
 	 */
 	@Override
 	public void insert(long key) throws IOException {
+		insert(key, 1);
+	}
+	
+	/**
+	 * 
+	 * Adding occurrences of a key, the key is inserted with delta as its
+	 * frequency if it is not in the B Tree yet
+	 * 
+	 * @param key - the key that being inserted
+	 * @param delta - number of occurrences to add
+	 * @throws IOException - throwing exceptions if there are issues
+	 */
+	public void insert(long key, int delta) throws IOException {
+		checkWritable();
+		BTreeNode start = root;
 		if(root.getNumKeys() == (2 * degree - 1)) {
-			BTreeNode s = splitRoot();
-			insertNonFull(s, key);
-		} else {
-			insertNonFull(root, key);
+			start = splitRoot();
+		}
+		insertNonFull(start, key, start.findKey(key), delta);
+	}
+
+	/**
+	 * 
+	 * Refusing changes once the tree is shared by reader threads
+	 * 
+	 */
+	private void checkWritable() {
+		if(readOnly) {
+			throw new IllegalStateException("The tree is open for concurrent reads only");
 		}
-		
 	}
 
 	/**
@@ -316,23 +732,19 @@ public class BTree implements BTreeInterface, Closeable
 		BTreeNode z = allocateNode(); 
 		z.setIsLeaf(y.getIsLeaf());
 		z.setNumKeys(degree - 1);
-		for(int j = 1; j < degree; j++) {
-			z.keys[j] = y.keys[j+degree];
-		}
+		System.arraycopy(y.keys, degree + 1, z.keys, 1, degree - 1);
+		System.arraycopy(y.frequencies, degree + 1, z.frequencies, 1, degree - 1);
 		if(!y.getIsLeaf()) {
-			for(int j = 1; j <= degree; j++) {
-				z.children[j] = y.children[j + degree];
-			}
+			System.arraycopy(y.children, degree + 1, z.children, 1, degree);
 		}
 		y.setNumKeys(degree - 1);
-		for(int j = currentNode.getNumKeys() + 1; j > index; j--) {
-			currentNode.children[j + 1] = currentNode.children[j];
-		}
+		int numKeys = currentNode.getNumKeys();
+		System.arraycopy(currentNode.children, index + 1, currentNode.children, index + 2, numKeys - index + 1);
 		currentNode.children[index + 1] = z.getAddress();
-		for(int j = currentNode.getNumKeys(); j >= index; j--) { // shifting the corresponding keys
-			currentNode.keys[j+1] = currentNode.keys[j];
-		}
+		System.arraycopy(currentNode.keys, index, currentNode.keys, index + 1, numKeys - index + 1); // shifting the corresponding keys
+		System.arraycopy(currentNode.frequencies, index, currentNode.frequencies, index + 1, numKeys - index + 1);
 		currentNode.keys[index] = y.keys[degree];
+		currentNode.frequencies[index] = y.frequencies[degree];
 		currentNode.incrementNumKeys(); // updating number of keys 
 		if(currentNode.getNumKeys() == degree * 2) {
 			System.out.println(currentNode.getNumKeys());
@@ -358,12 +770,9 @@ public class BTree implements BTreeInterface, Closeable
 	 */
 	@Override
 	public long search(BTreeNode currentNode, long key) throws IOException {
-		int i = 1;
-		while(i <= currentNode.getNumKeys() && key > currentNode.keys[i].getKey()) {
-			i++;
-		}
-		if(i <= currentNode.getNumKeys() && key == currentNode.keys[i].getKey()) {
-			return(currentNode.keys[i].getFrequency());
+		int i = currentNode.findKey(key);
+		if(i <= currentNode.getNumKeys() && key == currentNode.keys[i]) {
+			return(currentNode.frequencies[i]);
 		} else if(currentNode.getIsLeaf()) {
 			return 0;
 		} else {
@@ -387,9 +796,97 @@ public class BTree implements BTreeInterface, Closeable
 	 * @throws IOException - Throws IO exception if there are issues
 	 */
 	public long searchTwo(long key) throws IOException {
-        return search(root, key);
+		if(usingCache && !readOnly) {
+			return search(root, key);
+		}
+		if(root.getNumKeys() == 0) {
+			return 0;
+		}
+		BTreeNodeView node = readPage(rootAddress, 0);
+		while(true) {
+			int i = node.findKey(key);
+			if(i <= node.getNumKeys() && key == node.getKey(i)) {
+				return node.getFrequency(i);
+			} else if(node.getIsLeaf()) {
+				return 0;
+			}
+			node = readPage(node.getChild(i), 0);
+		}
     }
 
+	/**
+	 * 
+	 * Looking up many keys in one pass. The keys are sorted and duplicates
+	 * removed, then the tree is descended once for all of them: the keys that
+	 * fall under the same child are passed down together, so every page is
+	 * read at most once per batch and pages are visited in file order of
+	 * their keys.
+	 * 
+	 * @param keys - keys to look up, in any order and with duplicates
+	 * @return frequencies - frequency of keys[i] at index i, 0 if it is not in the tree
+	 * @throws IOException - Throws IO exception if there are issues
+	 */
+	public long[] searchBatch(long[] keys) throws IOException {
+		long[] sorted = keys.clone();
+		Arrays.sort(sorted);
+		int unique = 0;
+		for(int i = 0; i < sorted.length; i++) {
+			if(unique == 0 || sorted[i] != sorted[unique - 1]) {
+				sorted[unique++] = sorted[i];
+			}
+		}
+		long[] found = new long[unique];
+		if(unique > 0 && root.getNumKeys() > 0) {
+			if(usingCache && !readOnly) {
+				flushCache();
+			}
+			searchBatch(rootAddress, 0, sorted, found, 0, unique);
+		}
+		long[] frequencies = new long[keys.length];
+		for(int i = 0; i < keys.length; i++) {
+			frequencies[i] = found[Arrays.binarySearch(sorted, 0, unique, keys[i])];
+		}
+		return frequencies;
+	}
+	
+	/**
+	 * 
+	 * Looking up a sorted run of keys in the subtree of a page
+	 * 
+	 * @param address - address of the page
+	 * @param level - depth of the page, selects the view it is read into
+	 * @param keys - sorted keys without duplicates
+	 * @param found - frequencies of the keys, filled in when a key is found
+	 * @param from - first key of the run
+	 * @param to - end of the run, exclusive
+	 * @throws IOException - Throws IO exception if there are issues
+	 */
+	private void searchBatch(long address, int level, long[] keys, long[] found, int from, int to) throws IOException {
+		BTreeNodeView node = readPage(address, level);
+		int numKeys = node.getNumKeys();
+		int i = from;
+		while(i < to) {
+			int slot = node.findKey(keys[i]);
+			if(slot <= numKeys && node.getKey(slot) == keys[i]) {
+				found[i++] = node.getFrequency(slot);
+			} else if(node.getIsLeaf()) {
+				i++;
+			} else { // every following key below the key of the slot goes to the same child
+				int end = i + 1;
+				if(slot > numKeys) {
+					end = to;
+				} else {
+					long bound = node.getKey(slot);
+					while(end < to && keys[end] < bound) {
+						end++;
+					}
+				}
+				searchBatch(node.getChild(slot), level + 1, keys, found, i, end);
+				i = end;
+			}
+		}
+	}
+
 	/**
 	 * recursively inserting a new key into a node if it's not full
 	 * @param currentNode - the node that is being processed 
@@ -398,91 +895,80 @@ public class BTree implements BTreeInterface, Closeable
 	 */
 	@Override
 	public void insertNonFull(BTreeNode currentNode, long key) throws IOException {
-		int i = currentNode.getNumKeys();
-		// if node is leaf then increment frequency of or insert sequence
+		insertNonFull(currentNode, key, currentNode.findKey(key), 1);
+	}
+	
+	/**
+	 * inserting a key into a node that is not full, the slot of the key in
+	 * the node has already been found so every node is searched only once
+	 * @param currentNode - the node that is being processed 
+	 * @param key - key value of the node 
+	 * @param i - currentNode.findKey(key)
+	 * @param delta - number of occurrences to add
+	 * @throws IOException - Throws IO exception if there are issues
+	 */
+	private void insertNonFull(BTreeNode currentNode, long key, int i, int delta) throws IOException {
+		int numKeys = currentNode.getNumKeys();
+		if(i <= numKeys && currentNode.keys[i] == key) { // the sequence is already in the node
+			currentNode.frequencies[i] += delta;
+			nodeWrite(currentNode);
+			return;
+		}
 		if(currentNode.getIsLeaf()) {
-			for(int j = 1; j <= currentNode.getNumKeys(); j++) {
-				if(currentNode.keys[j].getKey() == key) {
-					currentNode.keys[j].incrementFrequency();
-					if(usingCache) {
-						cacheWrite(currentNode);
-					} else {
-						diskWrite(currentNode);
-					}
-					return;
-				}
-			}
-			while(i >= 1 && key < currentNode.keys[i].getKey()) {
-				if(i == degree * 2) {
-					System.out.println();
-				}
-				currentNode.keys[i+1] = currentNode.keys[i];
-				i = i-1;
-			}
-			currentNode.keys[i+1] = new TreeObject(key, 1);
+			System.arraycopy(currentNode.keys, i, currentNode.keys, i + 1, numKeys - i + 1);
+			System.arraycopy(currentNode.frequencies, i, currentNode.frequencies, i + 1, numKeys - i + 1);
+			currentNode.keys[i] = key;
+			currentNode.frequencies[i] = delta;
 			currentNode.incrementNumKeys();
-			if(currentNode.getNumKeys() == degree * 2) {
-				System.out.println(currentNode.getNumKeys());
-			}
-			if(usingCache) {
-				cacheWrite(currentNode);
-			} else {
-				diskWrite(currentNode);
-			}
-		} else { // if not leaf increment frequency of sequence, insert it, or find node to insert in
-			while(i >= 1 && key < currentNode.keys[i].getKey()) {
-				i = i - 1;
-			}
-			i++;
-			if(i-1 <= currentNode.getNumKeys() && i-1 > 0) {
-				if(currentNode.keys[i-1].getKey() == key) {
-					currentNode.keys[i-1].incrementFrequency();
-					if(usingCache) {
-						cacheWrite(currentNode);
-					} else {
-						diskWrite(currentNode);
-					}
-					return;
-				}
-			}
-			BTreeNode child;
-			if(usingCache) {
-				child = cacheRead(currentNode.children[i]);
-			} else {
-				child = diskRead(currentNode.children[i]);
-			}
-			for(int j = 1; j <= child.getNumKeys(); j++) {
-				if(child.keys[j].getKey() == key) {
-					child.keys[j].incrementFrequency();
-					if(usingCache) {
-						cacheWrite(child);
-					} else {
-						diskWrite(child);
-					}
-					return;
-				}
-			}
-			if(child.getNumKeys() == (2*degree - 1)) {
-				splitChild(currentNode, i);
-				if(currentNode.keys[i].getKey() == key) {
-					currentNode.keys[i].incrementFrequency();
-					if(usingCache) {
-						cacheWrite(currentNode);
-					} else {
-						diskWrite(currentNode);
-					}
-					return;
-				}
-				if(key > currentNode.keys[i].getKey()) {
-					i++;
-				}
+			nodeWrite(currentNode);
+			return;
+		}
+		BTreeNode child = nodeRead(currentNode.children[i]);
+		int j = child.findKey(key);
+		if(j <= child.getNumKeys() && child.keys[j] == key) { // a full child holding the key is not split
+			child.frequencies[j] += delta;
+			nodeWrite(child);
+			return;
+		}
+		if(child.getNumKeys() == (2*degree - 1)) {
+			splitChild(currentNode, i);
+			if(currentNode.keys[i] == key) {
+				currentNode.frequencies[i] += delta;
+				nodeWrite(currentNode);
+				return;
 			}
-			if(usingCache) {
-				child = cacheRead(currentNode.children[i]);
-			} else {
-				child = diskRead(currentNode.children[i]);
+			if(key > currentNode.keys[i]) {
+				i++;
 			}
-			insertNonFull(child, key);
+			child = nodeRead(currentNode.children[i]);
+			j = child.findKey(key);
+		}
+		insertNonFull(child, key, j, delta);
+	}
+	
+	/**
+	 * reading a node through the cache when it is used
+	 * @param address - address of the node
+	 * @return node - the node at the address
+	 * @throws IOException - Throws IO exception if there are issues
+	 */
+	private BTreeNode nodeRead(long address) throws IOException {
+		if(usingCache) {
+			return cacheRead(address);
+		}
+		return diskRead(address);
+	}
+	
+	/**
+	 * writing a changed node through the cache when it is used
+	 * @param n - the changed node
+	 * @throws IOException - Throws IO exception if there are issues
+	 */
+	private void nodeWrite(BTreeNode n) throws IOException {
+		if(usingCache) {
+			cacheWrite(n);
+		} else {
+			diskWrite(n);
 		}
 	}
 
@@ -491,173 +977,167 @@ public class BTree implements BTreeInterface, Closeable
 	 * @param fileName - file name of dump file
 	 */
 	public void dump(String fileName) {
-		try {
-			PrintStream stream = new PrintStream(new File(fileName));
-			BTreeDump(root, stream);
-			System.setOut(stream);
-			stream.close();
+		try(OutputStream stream = new BufferedOutputStream(new FileOutputStream(fileName), DUMP_BUFFER_BYTES)) {
+			dump(stream);
 		} catch(Exception e) {
 			System.err.println(e);
 		}
 	}
-	
+
 	/**
-	 * Recursively dump nodes in order to dump file
-	 * 
-	 * @param dumpNode - node being printed 
-	 * @param stream - destination to print to
-	 * @throws IOException
+	 * Prints every key of the BTree in order with its frequency
+	 * @param stream - stream the lines are appended to, it is not closed
+	 * @throws IOException - Throws IO exception if there are issues
 	 */
-	private void BTreeDump(BTreeNode dumpNode, PrintStream stream) throws IOException {
-		if(dumpNode.getIsLeaf()) {
-			for(int i = 1; i <= dumpNode.getNumKeys(); i++) {
-				stream.append(longToSequence(dumpNode.keys[i].getKey()) + " " + dumpNode.keys[i].getFrequency() + "\n");
-			}
-			return;
+	public void dump(OutputStream stream) throws IOException {
+		KmerDecoder decoder = new KmerDecoder(sequenceLength);
+		BTreeCursor cursor = cursor();
+		while(cursor.next()) {
+			decoder.writeLine(cursor.getKey(), cursor.getFrequency(), stream);
 		}
-		for(int i = 1; i <= dumpNode.getNumKeys(); i++) {
-			BTreeNode child;
-			if(usingCache) {
-				child = cacheRead(dumpNode.children[i]);
-			} else {
-				child = diskRead(dumpNode.children[i]);			
-			}
-			BTreeDump(child, stream);
-			stream.append(longToSequence(dumpNode.keys[i].getKey()) + " " + dumpNode.keys[i].getFrequency() + "\n");
-		}
-		BTreeNode child;
-		if(usingCache) {
-			child = cacheRead(dumpNode.children[dumpNode.getNumKeys() + 1]);
-		} else {
-			child = diskRead(dumpNode.children[dumpNode.getNumKeys() + 1]);			
-		}
-		BTreeDump(child, stream);
-		
 	}
 
 	/**
-	 * Helper method for SQL statement
-	 * @param statement - SQL statement
+	 * Inserting every key of the BTree into the sequences table. The rows go
+	 * through one prepared statement in JDBC batches, and the batches are
+	 * committed in large transactions instead of one transaction per row.
+	 * @param connection - connection to a database with a sequences table
+	 * @return rows - number of rows inserted
+	 * @throws SQLException - Throws SQL exception if the rows can not be inserted, the open transaction is rolled back
+	 * @throws IOException - Throws IO exception if the tree can not be read
 	 */
-	public void dumpSQL(Statement statement) {
-		try {
-			BTreeDumpSQL(root, statement);
-		} catch(Exception e) {
-			e.printStackTrace();
+	public long dumpSQL(Connection connection) throws SQLException, IOException {
+		boolean autoCommit = connection.getAutoCommit();
+		connection.setAutoCommit(false);
+		long rows = 0;
+		KmerDecoder decoder = new KmerDecoder(sequenceLength);
+		try(PreparedStatement insert = connection.prepareStatement("insert into sequences values(?, ?)")) {
+			BTreeCursor cursor = cursor();
+			while(cursor.next()) {
+				insert.setString(1, decoder.decode(cursor.getKey()));
+				insert.setInt(2, cursor.getFrequency());
+				insert.addBatch();
+				if(++rows % SQL_BATCH_ROWS == 0) {
+					insert.executeBatch();
+					if(rows % SQL_COMMIT_ROWS == 0) {
+						connection.commit();
+					}
+				}
+			}
+			insert.executeBatch();
+			connection.commit();
+		} catch(SQLException | IOException e) {
+			connection.rollback();
+			throw e;
+		} finally {
+			connection.setAutoCommit(autoCommit);
 		}
+		return rows;
 	}
 	
 	/**
 	 * 
-	 * Recursively prints all nodes inorder to SQL
+	 * Opening a cursor placed before the first key. Inserting keys while
+	 * the cursor is used leaves it undefined until it is placed again.
 	 * 
-	 * @param dumpNode - node that is being printed out 
-	 * @param statement - statement(s) of the SQL 
-	 * @throws SQLException
-	 * @throws IOException
+	 * @return cursor - walks the keys in order, or from seek() or range()
+	 * @throws IOException - Throws IO exception if there are issues
 	 */
-	public void BTreeDumpSQL(BTreeNode dumpNode, Statement statement) throws SQLException, IOException {
-		if(dumpNode.getIsLeaf()) {
-			for(int i = 1; i <= dumpNode.getNumKeys(); i++) {
-				String insertString = longToSequence(dumpNode.keys[i].getKey());
-				long frequency = dumpNode.keys[i].getFrequency();
-				insertString = "insert into sequences values('" + insertString + "', " + frequency + ")";
-				statement.executeUpdate(insertString);
-			}
-			return;
-		}
-		BTreeNode child;
-		for(int i = 1; i <= dumpNode.getNumKeys(); i++) {
-			if(usingCache) {
-				child = cacheRead(dumpNode.children[i]);
-			} else {
-				child = diskRead(dumpNode.children[i]);			
-			}
-			BTreeDumpSQL(child, statement);
-			String insertString = longToSequence(dumpNode.keys[i].getKey());
-			long frequency = dumpNode.keys[i].getFrequency();
-			insertString = "insert into sequences values('" + insertString + "', " + frequency + ")";
-			statement.executeUpdate(insertString);
-		}
-		if(usingCache) {
-			child = cacheRead(dumpNode.children[dumpNode.getNumKeys() + 1]);
-		} else {
-			child = diskRead(dumpNode.children[dumpNode.getNumKeys() + 1]);			
-		}
-		BTreeDumpSQL(child, statement);
+	public BTreeCursor cursor() throws IOException {
+		return new BTreeCursor(this);
 	}
-
+	
 	/**
-	 * Method for converting a long integer to a DNA sequence
-	 * @param binary - Binary value of sequence
-	 * @return - DNA string sequence
-	 */
-	private String longToSequence(long binary) {
-		String returnString = "";
-		String numRepresentation = Long.toBinaryString(binary);
-		int j  = numRepresentation.length();
-		while(j+1 < sequenceLength * 2) {
-			returnString+= "a";
-			j+= 2;
-		}
-		if(j < sequenceLength * 2){
-			if(numRepresentation.substring(0, 1).equals("1")) {
-				returnString += "c";				
-			} else {
-				returnString += "a";
-			}
-			numRepresentation = numRepresentation.substring(1);
-		}
-		String binaryVal;
-		while(numRepresentation.length() > 1) {
-			binaryVal = numRepresentation.substring(0, 2);
-			if(binaryVal.equals("00")) {
-				returnString+= "a";
-				numRepresentation = numRepresentation.substring(2);
-			} else if(binaryVal.equals("01")) {
-				returnString += "c";
-				numRepresentation = numRepresentation.substring(2);
-			} else if(binaryVal.equals("10")) {
-				returnString += "g";
-				numRepresentation = numRepresentation.substring(2);
-			} else if(binaryVal.equals("11")) {
-				returnString += "t";
-				numRepresentation = numRepresentation.substring(2);
-			}
+	 * 
+	 * Getting the file ready to be read page by page, changed cached nodes
+	 * are written out first so the file is current
+	 * 
+	 * @return address of the root page, -1 if the tree has no keys
+	 * @throws IOException - Throws IO exception if there are issues
+	 */
+	long prepareScan() throws IOException {
+		if(root.getNumKeys() == 0) {
+			return -1;
+		}
+		if(usingCache && !readOnly) {
+			flushCache();
 		}
-		return returnString;
+		return rootAddress;
 	}
 
 	/**
 	 * 
-	 * Creating the metadata from the buffer
+	 * Creating the metadata from the buffer. New files get the versioned header:
+	 * magic (long), version, page size, degree, sequence length, page format
+	 * (index in PageCodec.NAMES), flags (ints), root address and next address
+	 * (longs). Files opened without a header keep the legacy layout: root
+	 * address, next address (longs), page size and flags (ints).
 	 * 
 	 * @throws IOException - Throws IO exception if there are issues
 	 */
 	private void createMetaData() throws IOException {
-		file.position(0);
 		buffer.clear();
-		buffer.putLong(rootAddress);
-		buffer.putLong(nextAddress);
-		buffer.putInt(nodeSize);
+		if(version == 0) {
+			buffer.putLong(rootAddress);
+			buffer.putLong(nextAddress);
+			buffer.putInt(nodeSize);
+			buffer.putInt(flags);
+		} else {
+			buffer.putLong(HEADER_MAGIC);
+			buffer.putInt(version);
+			buffer.putInt(nodeSize);
+			buffer.putInt(degree);
+			buffer.putInt(sequenceLength);
+			buffer.putInt(Arrays.asList(PageCodec.NAMES).indexOf(codec.getName()));
+			buffer.putInt(flags);
+			buffer.putLong(rootAddress);
+			buffer.putLong(nextAddress);
+		}
 		buffer.flip();
-		file.write(buffer);
-		
+		writeFully(buffer, 0);
 	}
 	/**
 	 * 
-	 * read the meta data from the buffer
+	 * read the meta data from the start of the file, the header of the file
+	 * or the legacy metadata of a file written before there was a header
 	 * 
-	 * @throws IOException - Throws IO exception if there are issues
+	 * @return codecName - name of the page format of the file
+	 * @throws IOException - Throws IO exception if there are issues or the header is not valid
 	 */
-	private void readMetaData() throws IOException {
-		file.position(0);
-		buffer.clear();
-		file.read(buffer);
-		buffer.flip();
-		rootAddress = buffer.getLong();
-		nextAddress = buffer.getLong();
-		nodeSize = buffer.getInt();
+	private String readMetaData() throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+		while(header.hasRemaining() && file.read(header, header.position()) > 0) {
+		}
+		header.flip();
+		if(header.remaining() < 24) {
+			throw new IOException("The BTree file header is not valid");
+		}
+		if(header.remaining() < HEADER_SIZE || header.getLong(0) != HEADER_MAGIC) {
+			version = 0;
+			rootAddress = header.getLong();
+			nextAddress = header.getLong();
+			nodeSize = header.getInt();
+			flags = header.getInt();
+			firstPage = LEGACY_METADATA_SIZE;
+			return (flags & FLAG_VARINT_PAGES) != 0 ? "varint" : "fixed";
+		}
+		header.getLong();
+		version = header.getInt();
+		if(version < 1 || version > HEADER_VERSION) {
+			throw new IOException("Unsupported BTree file version " + version);
+		}
+		nodeSize = header.getInt();
+		degree = header.getInt();
+		sequenceLength = header.getInt();
+		int codecIndex = header.getInt();
+		flags = header.getInt();
+		rootAddress = header.getLong();
+		nextAddress = header.getLong();
+		if(nodeSize < MIN_PAGE_SIZE || nodeSize > MAX_PAGE_SIZE || codecIndex < 0 || codecIndex >= PageCodec.NAMES.length) {
+			throw new IOException("The BTree file header is not valid");
+		}
+		firstPage = nodeSize;
+		return PageCodec.NAMES[codecIndex];
 	}
 
 	/**
@@ -666,9 +1146,19 @@ public class BTree implements BTreeInterface, Closeable
 	 */
 	public void closeTree() throws IOException {
 		if(usingCache) {
-			while(cache.getSize() > 0) {
-				diskWrite(cache.getEldest().getNode());
-			}			
+			flushCache();
+			cache.clearCache();
+		}
+		if(writeBehind != null) {
+			writeBehind.flush();
+		}
+		if(appending) {
+			file.force(false); // the pages of the append reach the disk before the metadata pointing at them
+			flags &= ~FLAG_INCOMPLETE;
+			createMetaData();
+			file.force(false);
+			appending = false;
+			return;
 		}
 		createMetaData();
 	}
@@ -678,6 +1168,9 @@ public class BTree implements BTreeInterface, Closeable
 	 * @throws IOException - Throws IO exception if there are issues
 	 */
 	public void close() throws IOException {
+		if(writeBehind != null) {
+			writeBehind.close();
+		}
 		raf.close();
 		file.close();
 	}
@@ -0,0 +1,201 @@
+package cs321.btree;
+
+import java.io.IOException;
+import java.util.ArrayList;
+
+/**
+ * Filename: BTreeBulkLoader.java
+ * Builds a B Tree bottom-up from keys that arrive in ascending order.
+ * Every level keeps one open node that is filled to 2t-1 keys before
+ * the next key is pushed up to the level above, so pages are written
+ * once, in one pass, and fully packed. Equal neighbouring keys are
+ * merged by adding their frequencies.
+ *
+ * When the stream ends, the rightmost node of every level borrows keys
+ * from its left sibling so that it holds at least t-1 keys, which keeps
+ * the result a valid B Tree for later inserts.
+ *
+ * @author Harry Nguyen
+ */
+public class BTreeBulkLoader {
+	private final BTree tree;
+	private final int degree;
+	private final int maxKeys;
+	private final ArrayList<BTreeNode> open; // node currently being filled on each level
+	private final ArrayList<BTreeNode> closed; // last full node of each level, written once its right sibling is done
+	private boolean hasPending;
+	private long pendingKey;
+	private int pendingFrequency;
+	private boolean finished;
+
+	/**
+	 * Constructor of the bulk loader, use BTree.bulkLoader() to create one
+	 * @param tree - empty tree that is being filled
+	 */
+	BTreeBulkLoader(BTree tree) {
+		this.tree = tree;
+		this.degree = tree.getDegree();
+		this.maxKeys = 2 * degree - 1;
+		open = new ArrayList<BTreeNode>();
+		closed = new ArrayList<BTreeNode>();
+		open.add(newNode(0));
+		closed.add(null);
+	}
+
+	/**
+	 * Adding the next key of the sorted stream
+	 * @param key - key that is not smaller than the previous one
+	 * @param frequency - frequency of the key
+	 * @throws IOException - Throws IO exception if there are issues
+	 */
+	public void add(long key, int frequency) throws IOException {
+		if(finished) {
+			throw new IllegalStateException("Bulk load already finished");
+		}
+		if(hasPending) {
+			if(key == pendingKey) {
+				pendingFrequency += frequency;
+				return;
+			}
+			if(key < pendingKey) {
+				throw new IllegalArgumentException("Keys must be added in ascending order");
+			}
+			addToLevel(0, pendingKey, pendingFrequency);
+		}
+		hasPending = true;
+		pendingKey = key;
+		pendingFrequency = frequency;
+	}
+
+	/**
+	 * Writing the remaining nodes and installing the new root. The
+	 * metadata is written as usual by BTree.closeTree().
+	 * @throws IOException - Throws IO exception if there are issues
+	 */
+	public void finish() throws IOException {
+		if(finished) {
+			return;
+		}
+		finished = true;
+		if(hasPending) {
+			addToLevel(0, pendingKey, pendingFrequency);
+			hasPending = false;
+		}
+		int top = open.size() - 1;
+		for(int level = 0; level < top; level++) {
+			BTreeNode node = open.get(level);
+			if(node.getNumKeys() < degree - 1) {
+				borrowFromLeft(level);
+			}
+			node.setAddress(tree.allocateAddress());
+			attachToParent(level, node);
+			tree.diskWrite(closed.get(level));
+			tree.diskWrite(node);
+		}
+		tree.setBulkLoadedRoot(open.get(top));
+	}
+
+	/**
+	 * Appending a key to the open node of a level, closing the node and
+	 * pushing the key to the level above when the node is full
+	 * @param level - level of the tree, leaves are level 0
+	 * @param key - key being added
+	 * @param frequency - frequency of the key
+	 * @throws IOException - Throws IO exception if there are issues
+	 */
+	private void addToLevel(int level, long key, int frequency) throws IOException {
+		BTreeNode node = open.get(level);
+		if(node.getNumKeys() == maxKeys) {
+			closeNode(level);
+			addToLevel(level + 1, key, frequency);
+			return;
+		}
+		node.incrementNumKeys();
+		node.keys[node.getNumKeys()] = key;
+		node.frequencies[node.getNumKeys()] = frequency;
+	}
+
+	/**
+	 * Giving the full open node of a level its page, hanging it under the
+	 * open node of the level above and starting a new open node
+	 * @param level - level of the node being closed
+	 * @throws IOException - Throws IO exception if there are issues
+	 */
+	private void closeNode(int level) throws IOException {
+		BTreeNode node = open.get(level);
+		node.setAddress(tree.allocateAddress());
+		if(level + 1 == open.size()) {
+			open.add(newNode(level + 1));
+			closed.add(null);
+		}
+		attachToParent(level, node);
+		if(closed.get(level) != null) {
+			tree.diskWrite(closed.get(level));
+		}
+		closed.set(level, node);
+		open.set(level, newNode(level));
+	}
+
+	/**
+	 * Adding a node as the last child of the open node one level up
+	 * @param level - level of the child
+	 * @param node - child node with its final address
+	 */
+	private void attachToParent(int level, BTreeNode node) {
+		BTreeNode parent = open.get(level + 1);
+		parent.children[parent.getNumKeys() + 1] = node.getAddress();
+	}
+
+	/**
+	 * Rotating keys from the last closed node of a level through their
+	 * separator into the open node until it holds t-1 keys. The separator
+	 * is the last key of the lowest open node above that is not empty.
+	 * @param level - level of the underfull open node
+	 */
+	private void borrowFromLeft(int level) {
+		BTreeNode right = open.get(level);
+		BTreeNode left = closed.get(level);
+		BTreeNode parent = open.get(level + 1);
+		for(int p = level + 2; parent.getNumKeys() == 0; p++) {
+			parent = open.get(p);
+		}
+		int separator = parent.getNumKeys();
+		int moved = degree - 1 - right.getNumKeys();
+		int leftKeys = left.getNumKeys();
+		int rightKeys = right.getNumKeys();
+
+		for(int j = rightKeys; j >= 1; j--) {
+			right.keys[j + moved] = right.keys[j];
+			right.frequencies[j + moved] = right.frequencies[j];
+		}
+		right.keys[moved] = parent.keys[separator];
+		right.frequencies[moved] = parent.frequencies[separator];
+		for(int j = 1; j < moved; j++) {
+			right.keys[j] = left.keys[leftKeys - moved + 1 + j];
+			right.frequencies[j] = left.frequencies[leftKeys - moved + 1 + j];
+		}
+		parent.keys[separator] = left.keys[leftKeys - moved + 1];
+		parent.frequencies[separator] = left.frequencies[leftKeys - moved + 1];
+		if(!right.getIsLeaf()) {
+			for(int j = rightKeys + 1; j >= 1; j--) {
+				right.children[j + moved] = right.children[j];
+			}
+			for(int j = 1; j <= moved; j++) {
+				right.children[j] = left.children[leftKeys - moved + 1 + j];
+			}
+		}
+		left.setNumKeys(leftKeys - moved);
+		right.setNumKeys(rightKeys + moved);
+	}
+
+	/**
+	 * Creating an empty node for a level, the address is given when it is closed
+	 * @param level - level of the new node
+	 * @return node - the new node
+	 */
+	private BTreeNode newNode(int level) {
+		BTreeNode node = new BTreeNode(degree, -1);
+		node.setIsLeaf(level == 0);
+		return node;
+	}
+}
@@ -1,127 +1,90 @@
 package cs321.btree;
 
-import java.util.LinkedHashMap;
-import java.util.LinkedList;
-import java.util.Map;
+import java.util.Collection;
+import java.util.HashMap;
 
 /**
  * Filename: BTreeCache.java
- * Cache class for storing generic data types with a LinkedList
- * implementation. Maximum size is specified upon construction
- * and least-recently-used objects are removed before new
- * ones are added if that size is reached. If an object is
- * attempted to be re-added, it is removed from the cache
- * then added to the front. Number of cache hits and
- * references is recorded.
+ * Cache of BTree nodes keyed by their address. The nodes are kept in a
+ * HashMap and the choice of which node leaves the cache when it is full
+ * is made by a CachePolicy (LRU, CLOCK, 2Q or ARC), so hits, inserts and
+ * evictions are O(1). Every entry carries a dirty flag so that only
+ * modified nodes have to be written back when they leave the cache.
+ * Number of cache hits and references is recorded.
  *
  * @author Brian Heleker
  */
 public class BTreeCache {
     private final int MAX_SIZE;
-    private int cacheSize;
     private int cacheReferences;
     private int cacheHits;
-    private LinkedHashMap<Long, BTreeCacheObject> cache;
-    public LinkedList<Long> addresses;
+    private HashMap<Long, BTreeCacheObject> cache;
+    private CachePolicy policy;
 
     /**
-     * Constructor for cache. Overrides removeEldestEntry
-     * to ensure that cache does not become bigger than
-     * specified in the provided size value.
+     * Constructor for an LRU cache.
      *
      * @param size - Maximum size of the cache
      */
-    @SuppressWarnings("serial")
-	public BTreeCache(int size) {
-        MAX_SIZE = size;
-        cacheSize = cacheReferences = cacheHits = 0;
-        addresses = new LinkedList<>();
-        cache = new LinkedHashMap<Long, BTreeCacheObject>(size) {
-            protected boolean removeEldestEntry(Map.Entry<Long, BTreeCacheObject> eldest) {
-                return size() > MAX_SIZE;
-            }
-        };
+    public BTreeCache(int size) {
+        this(size, new LRUCachePolicy(Math.max(size, 1)));
     }
 
     /**
-     * Method to retrieve an object from the cache. If
-     * Object is already in cache, cacheHits is incremented
-     * and the object is removed and added to the front of
-     * the cache. If the object is not in the cache, it is
-     * added to the cache. If a new object is added to the
-     * cache, but it is already at maximum size, the oldest
-     * object is removed from the cache. cacheReferences is
-     * always incremented.
+     * Constructor for a cache with the given replacement policy.
      *
-     * @param element - object to be added to the class
-     * @return returnElement - object returned from the cache
+     * @param size - Maximum size of the cache
+     * @param policy - replacement policy created for the same size
      */
-    public BTreeCacheObject getObject(BTreeCacheObject element) {
-        BTreeCacheObject returnElement = element;
-
-        cacheReferences++;
-
-        if(contains(element)) {
-            cacheHits++;
-            removeObject(element);
-            addObject(element);
-        }
-        else {
-            if(cacheSize >= MAX_SIZE) {
-                cache.remove(element.getKey());
-                addresses.removeLast();
-                cacheSize--;
-            }
-            addObject(element);
-        }
-        return returnElement;
+    public BTreeCache(int size, CachePolicy policy) {
+        MAX_SIZE = Math.max(size, 1);
+        cacheReferences = cacheHits = 0;
+        cache = new HashMap<Long, BTreeCacheObject>(MAX_SIZE * 4 / 3 + 1);
+        this.policy = policy;
     }
-    
+
     /**
-     * Method to retrieve an object from the cache. If
-     * Object is already in cache, cacheHits is incremented
-     * and the object is removed and added to the front of
-     * the cache. If the object is not in the cache, it is
-     * added to the cache. If a new object is added to the
-     * cache, but it is already at maximum size, the oldest
-     * object is removed from the cache. cacheReferences is
-     * always incremented.
+     * Method to look up a node in the cache. A hit is reported to the
+     * policy and increments cacheHits. cacheReferences is always incremented.
      *
-     * @param address - address of BTreeCacheObject to be added to the class
-     * @return returnElement - BTreeCacheObject returned from the cache
+     * @param address - address of the node
+     * @return the cached object, or null if the node is not cached
      */
-    public BTreeCacheObject getObject(long address) {
-
-        BTreeCacheObject returnElement;
+    public BTreeCacheObject get(long address) {
         cacheReferences++;
-
-        cacheHits++;
-        returnElement = cache.get(address);
-        removeObject(returnElement);
-        addObject(returnElement);
-
-        return returnElement;
+        BTreeCacheObject element = cache.get(address);
+        if(element != null) {
+            cacheHits++;
+            policy.hit(address);
+        }
+        return element;
     }
 
     /**
-     * Adds specified object to the front of the cache.
+     * Adds an object to the cache, replacing an object with the same
+     * address. If the cache is full the policy picks an object that is
+     * removed and returned, so the caller can write it back when it is dirty.
      *
      * @param element - Object to be added to cache
+     * @return the evicted object, or null if nothing was evicted
      */
-    private void addObject(BTreeCacheObject element) {
-        cache.put(element.getKey(), element);
-        addresses.addFirst(element.getKey());
-        cacheSize++;
+    public BTreeCacheObject put(BTreeCacheObject element) {
+        if(cache.put(element.getKey(), element) != null) {
+            return null;
+        }
+        long victim = policy.miss(element.getKey());
+        if(victim == CachePolicy.NO_EVICTION) {
+            return null;
+        }
+        return cache.remove(victim);
     }
-    
+
     /**
-     * Returns the eldest node in the cache
-     * @return eldest node
+     * Getter method for the objects currently in the cache
+     * @return - cached objects
      */
-    public BTreeCacheObject getEldest() {
-    	cacheSize--;
-    	long key = addresses.removeLast();
-    	return cache.remove(key);
+    public Collection<BTreeCacheObject> getObjects() {
+    	return cache.values();
     }
 
     /**
@@ -133,32 +96,30 @@ public class BTreeCache {
     }
 
     /**
-     * Getter method for getting address
+     * Checks whether a node is cached without changing its position
      * @param address - address location from file
-     * @return - address location
+     * @return - true if the node is cached
      */
     public boolean contains(long address) {
     	return (cache.containsKey(address));
     }
 
     /**
-     * Getter method for getting node
-     * @param node - Node with key value
-     * @return - Node with key value
+     * Looks up a node without counting a reference or reporting a hit to
+     * the policy, for writes of a node that was just read through get()
+     * @param address - address location from file
+     * @return the cached object, or null if the node is not cached
      */
-    public boolean contains(BTreeCacheObject node) {
-    	return (cache.containsKey(node.getKey()));
+    public BTreeCacheObject peek(long address) {
+    	return cache.get(address);
     }
 
     /**
-     * Removes an object from the cache
-     *
-     * @param element - Object to be removed from the cache
+     * Getter method for the number of references counted by get()
+     * @return - number of references
      */
-    private void removeObject(BTreeCacheObject element) {
-    	cache.remove(element.getKey());
-    	addresses.remove(element.getKey());
-        cacheSize--;
+    public int getReferences() {
+    	return cacheReferences;
     }
 
     /**
@@ -167,6 +128,23 @@ public class BTreeCache {
      */
     public void clearCache() {
         cache.clear();
+        policy.clear();
+    }
+
+    /**
+     * Getter method for the share of references that were hits
+     * @return - hit ratio between 0 and 1
+     */
+    public double getHitRatio() {
+        return cacheReferences == 0 ? 0 : cacheHits / 1.0 / cacheReferences;
+    }
+
+    /**
+     * Getter method for the name of the replacement policy
+     * @return - policy name
+     */
+    public String getPolicyName() {
+        return policy.getName();
     }
 
     /**
@@ -177,7 +155,8 @@ public class BTreeCache {
     public String toString() {
         StringBuilder returnString = new StringBuilder();
         returnString.append("~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~\n");
-        returnString.append("LinkedList Cache with ");
+        returnString.append(policy.getName());
+        returnString.append(" Cache with ");
         returnString.append(MAX_SIZE);
         returnString.append(" entries has been created\n");
         returnString.append("~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~\n");
@@ -188,9 +167,9 @@ public class BTreeCache {
         returnString.append(cacheHits);
         returnString.append("\n");
         returnString.append("1st-level cache hit ratio:         ");
-        returnString.append(cacheHits / 1.0 / cacheReferences);
+        returnString.append(getHitRatio());
         returnString.append("\n");
 
         return returnString.toString();
     }
-}
\ No newline at end of file
+}
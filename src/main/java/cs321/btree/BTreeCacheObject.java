@@ -10,6 +10,7 @@ package cs321.btree;
 public class BTreeCacheObject {
 	private long key;
 	private BTreeNode node;
+	private boolean dirty;
 
 	/**
 	 * 
@@ -42,4 +43,24 @@ public class BTreeCacheObject {
 	public BTreeNode getNode() {
 		return node;
 	}
+
+	/**
+	 * 
+	 * Checking whether the node was changed since it was read from disk
+	 * 
+	 * @return dirty
+	 */
+	public boolean isDirty() {
+		return dirty;
+	}
+
+	/**
+	 * 
+	 * Setting whether the node has changes that are not on disk yet
+	 * 
+	 * @param dirty
+	 */
+	public void setDirty(boolean dirty) {
+		this.dirty = dirty;
+	}
 }
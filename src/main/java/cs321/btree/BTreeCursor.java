@@ -0,0 +1,168 @@
+package cs321.btree;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Filename: BTreeCursor.java
+ * Cursor walking the keys of a BTree in order without recursion. The path
+ * from the root to the current page is kept on an explicit stack of page
+ * views, one per level, with the slot of the next key of every page, so
+ * moving to the next key does not create any object. seek() goes down a
+ * single path to the first key that is not smaller than the sought key,
+ * and range() stops the cursor after an upper bound, so a range scan only
+ * reads the pages that hold keys of the range.
+ *
+ * A cursor is made by BTree.cursor(). It sees the tree as it was when it
+ * was made or last positioned, inserting keys while a cursor is open
+ * leaves the cursor undefined until it is positioned again.
+ *
+ * @author Harry Nguyen
+ */
+public class BTreeCursor {
+	private final BTree tree;
+	private final ArrayList<BTreeNodeView> stack = new ArrayList<BTreeNodeView>(); // view of every level of the path
+	private int[] slots = new int[8]; // slot of the next key of every level of the path
+	private int depth = -1; // level of the last page of the path, -1 when the cursor is done
+	private boolean bounded; // set by range()
+	private long upperBound; // last key returned when bounded
+	private long key;
+	private int frequency;
+
+	/**
+	 * Constructor of the cursor, placed before the first key
+	 * @param tree - tree the pages are read from
+	 * @throws IOException - Throws IO exception if the pages can not be read
+	 */
+	BTreeCursor(BTree tree) throws IOException {
+		this.tree = tree;
+		first();
+	}
+
+	/**
+	 * Placing the cursor before the first key of the tree, without an upper bound
+	 * @throws IOException - Throws IO exception if the pages can not be read
+	 */
+	public void first() throws IOException {
+		bounded = false;
+		depth = -1;
+		long rootAddress = tree.prepareScan();
+		if(rootAddress >= 0) {
+			descend(rootAddress);
+		}
+	}
+
+	/**
+	 * Placing the cursor before the first key that is not smaller than a key,
+	 * without an upper bound
+	 * @param lowKey - smallest key the cursor returns
+	 * @throws IOException - Throws IO exception if the pages can not be read
+	 */
+	public void seek(long lowKey) throws IOException {
+		bounded = false;
+		depth = -1;
+		long address = tree.prepareScan();
+		while(address >= 0) {
+			BTreeNodeView node = push(address);
+			int i = node.findKey(lowKey);
+			slots[depth] = i;
+			if(node.getIsLeaf() || (i <= node.getNumKeys() && node.getKey(i) == lowKey)) {
+				return;
+			}
+			address = node.getChild(i);
+		}
+	}
+
+	/**
+	 * Placing the cursor before the keys from lowKey to highKey
+	 * @param lowKey - smallest key the cursor returns
+	 * @param highKey - largest key the cursor returns
+	 * @throws IOException - Throws IO exception if the pages can not be read
+	 */
+	public void range(long lowKey, long highKey) throws IOException {
+		seek(lowKey);
+		bounded = true;
+		upperBound = highKey;
+		if(highKey < lowKey) {
+			depth = -1;
+		}
+	}
+
+	/**
+	 * Moving to the next key
+	 * @return true if the cursor is on a key, false after the last key
+	 * @throws IOException - Throws IO exception if the pages can not be read
+	 */
+	public boolean next() throws IOException {
+		while(depth >= 0) {
+			BTreeNodeView node = stack.get(depth);
+			int i = slots[depth];
+			if(i > node.getNumKeys()) {
+				depth--; // every key of the page and its children was returned
+				continue;
+			}
+			key = node.getKey(i);
+			frequency = node.getFrequency(i);
+			slots[depth] = i + 1;
+			if(bounded && key > upperBound) {
+				depth = -1;
+				return false;
+			}
+			if(!node.getIsLeaf()) {
+				descend(node.getChild(i + 1));
+			}
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * getter for the key the cursor is on
+	 * @return key
+	 */
+	public long getKey() {
+		return key;
+	}
+
+	/**
+	 * getter for the frequency of the key the cursor is on
+	 * @return frequency
+	 */
+	public int getFrequency() {
+		return frequency;
+	}
+
+	/**
+	 * Pushing a page and the leftmost pages below it onto the path
+	 * @param address - address of the page
+	 * @throws IOException - Throws IO exception if the pages can not be read
+	 */
+	private void descend(long address) throws IOException {
+		while(true) {
+			BTreeNodeView node = push(address);
+			slots[depth] = 1;
+			if(node.getIsLeaf()) {
+				return;
+			}
+			address = node.getChild(1);
+		}
+	}
+
+	/**
+	 * Reading a page into the view of the level below the current one
+	 * @param address - address of the page
+	 * @return view - the view showing the page
+	 * @throws IOException - Throws IO exception if the page can not be read
+	 */
+	private BTreeNodeView push(long address) throws IOException {
+		depth++;
+		if(depth == stack.size()) {
+			stack.add(tree.newView());
+			if(depth == slots.length) {
+				slots = Arrays.copyOf(slots, 2 * slots.length);
+			}
+		}
+		return tree.readPage(stack.get(depth), address);
+	}
+}
@@ -0,0 +1,146 @@
+package cs321.btree;
+
+import java.io.IOException;
+
+/**
+ * Filename: BTreeMerger.java
+ * Merges several B Trees into one new tree. Every input is read in order
+ * by its own cursor, and a binary min-heap of primitive arrays holds the
+ * current key of every cursor, so the smallest key of all inputs is always
+ * on top. The keys leave the heap in ascending order and go straight into
+ * the bulk loader of the output, which adds up the frequencies of equal
+ * keys and writes every page of the new tree once. Memory only depends on
+ * the number of inputs and the height of their trees.
+ *
+ * All inputs must have the same sequence length and the same canonical
+ * setting, and none of them may hold an append that did not finish.
+ *
+ * @author Harry Nguyen
+ */
+public class BTreeMerger {
+	private final BTree[] inputs;
+	private final BTreeCursor[] cursors;
+	private final long[] heapKeys; // current key of the cursor of every heap slot
+	private final int[] heapInputs; // input of every heap slot
+	private int heapSize;
+
+	/**
+	 * Constructor of the merger, checking that the inputs can be merged
+	 * @param inputs - trees that are merged, they are only read
+	 */
+	public BTreeMerger(BTree... inputs) {
+		if(inputs.length == 0) {
+			throw new IllegalArgumentException("There is no tree to merge");
+		}
+		for(BTree input : inputs) {
+			if(input.getSequenceLength() != inputs[0].getSequenceLength()) {
+				throw new IllegalArgumentException("Trees of sequence length " + inputs[0].getSequenceLength() + " and " + input.getSequenceLength() + " can not be merged");
+			}
+			if(input.isCanonical() != inputs[0].isCanonical()) {
+				throw new IllegalArgumentException("Canonical and not canonical trees can not be merged");
+			}
+			if(input.isIncomplete()) {
+				throw new IllegalArgumentException("A tree holds an append that did not finish");
+			}
+		}
+		this.inputs = inputs;
+		this.cursors = new BTreeCursor[inputs.length];
+		this.heapKeys = new long[inputs.length];
+		this.heapInputs = new int[inputs.length];
+	}
+
+	/**
+	 * Writing the keys of all inputs into an empty tree. The output gets the
+	 * canonical setting of the inputs, its metadata is written as usual by
+	 * closeTree().
+	 * @param output - empty tree with the sequence length of the inputs
+	 * @return number of distinct keys written to the output
+	 * @throws IOException - Throws IO exception if a tree can not be read or written
+	 */
+	public long mergeInto(BTree output) throws IOException {
+		if(output.getSequenceLength() != inputs[0].getSequenceLength()) {
+			throw new IllegalArgumentException("The output tree does not have sequence length " + inputs[0].getSequenceLength());
+		}
+		output.setCanonical(inputs[0].isCanonical());
+		BTreeBulkLoader loader = output.bulkLoader();
+		heapSize = 0;
+		for(int i = 0; i < inputs.length; i++) {
+			cursors[i] = inputs[i].cursor();
+			if(cursors[i].next()) {
+				heapKeys[heapSize] = cursors[i].getKey();
+				heapInputs[heapSize] = i;
+				siftUp(heapSize++);
+			}
+		}
+		long distinct = 0;
+		long lastKey = 0;
+		while(heapSize > 0) {
+			long key = heapKeys[0];
+			BTreeCursor cursor = cursors[heapInputs[0]];
+			loader.add(key, cursor.getFrequency()); // equal keys of several inputs are added up by the loader
+			if(distinct == 0 || key != lastKey) {
+				distinct++;
+				lastKey = key;
+			}
+			if(cursor.next()) {
+				heapKeys[0] = cursor.getKey();
+			} else {
+				heapSize--;
+				heapKeys[0] = heapKeys[heapSize];
+				heapInputs[0] = heapInputs[heapSize];
+			}
+			siftDown(0);
+		}
+		loader.finish();
+		return distinct;
+	}
+
+	/**
+	 * Moving a heap slot up until its parent holds a smaller key
+	 * @param slot - slot that was filled
+	 */
+	private void siftUp(int slot) {
+		long key = heapKeys[slot];
+		int input = heapInputs[slot];
+		while(slot > 0) {
+			int parent = (slot - 1) >>> 1;
+			if(heapKeys[parent] <= key) {
+				break;
+			}
+			heapKeys[slot] = heapKeys[parent];
+			heapInputs[slot] = heapInputs[parent];
+			slot = parent;
+		}
+		heapKeys[slot] = key;
+		heapInputs[slot] = input;
+	}
+
+	/**
+	 * Moving a heap slot down until its children hold larger keys
+	 * @param slot - slot whose key grew
+	 */
+	private void siftDown(int slot) {
+		if(slot >= heapSize) {
+			return;
+		}
+		long key = heapKeys[slot];
+		int input = heapInputs[slot];
+		while(true) {
+			int child = 2 * slot + 1;
+			if(child >= heapSize) {
+				break;
+			}
+			if(child + 1 < heapSize && heapKeys[child + 1] < heapKeys[child]) {
+				child++;
+			}
+			if(key <= heapKeys[child]) {
+				break;
+			}
+			heapKeys[slot] = heapKeys[child];
+			heapInputs[slot] = heapInputs[child];
+			slot = child;
+		}
+		heapKeys[slot] = key;
+		heapInputs[slot] = input;
+	}
+}
@@ -7,6 +7,8 @@ import java.nio.channels.FileChannel;
 /**
  * Filename: BTreeNode
  * Implementing the BTree node
+ * Keys and frequencies are kept in parallel primitive arrays, slot i
+ * of both arrays belongs to the same key (slots start at 1)
  * @author Brian Heleker
  * @author Harry Nquyen
  */
@@ -14,7 +16,8 @@ public class BTreeNode {
 	private int numKeys;
 	private boolean isLeaf;
 	private long address;
-	TreeObject[] keys;
+	long[] keys;
+	int[] frequencies;
 	long[] children;
 
 	/**
@@ -24,7 +27,8 @@ public class BTreeNode {
 	 */
 	public BTreeNode(int treeDegree, long address) {
 		numKeys = 0;
-		keys = new TreeObject[2*treeDegree];
+		keys = new long[2*treeDegree];
+		frequencies = new int[2*treeDegree];
 		children = new long[2*treeDegree+1];
 		for(int i = 1; i <= 2*treeDegree; i++) {
 			children[i] = -1;
@@ -41,7 +45,8 @@ public class BTreeNode {
 	 * @throws IOException - Throws IO exception if there are issues
 	 */
 	public BTreeNode(long address, ByteBuffer buffer, int degree) throws IOException {
-		keys = new TreeObject[2*degree];
+		keys = new long[2*degree];
+		frequencies = new int[2*degree];
 		children = new long[2*degree+1];
 		for(int i = 1; i <= 2*degree; i++) {
 			children[i] = -1;
@@ -55,10 +60,8 @@ public class BTreeNode {
 		}
 		
 		for(int i = 1; i <= numKeys; i++) {
-			long insertKey = buffer.getLong();
-			int insertFrequency = buffer.getInt();
-			TreeObject tempObject = new TreeObject(insertKey, insertFrequency);
-			keys[i] = tempObject;
+			keys[i] = buffer.getLong();
+			frequencies[i] = buffer.getInt();
 		}
 		for(int i = 1; i <= numKeys + 1; i++) {
 			children[i] = buffer.getLong();
@@ -78,8 +81,8 @@ public class BTreeNode {
 			buffer.putInt(0);
 		}		
 		for(int i = 1; i <= numKeys; i++) {
-			buffer.putLong(keys[i].getKey());
-			buffer.putInt(keys[i].getFrequency());
+			buffer.putLong(keys[i]);
+			buffer.putInt(frequencies[i]);
 		}
 		for(int i = 1; i <= numKeys + 1; i++) {
 				buffer.putLong(children[i]);
@@ -132,6 +135,36 @@ public class BTreeNode {
 		return address;
 	}
 	
+	/**
+	 * setter for address
+	 * @param address - address of the page holding this node
+	 */
+	void setAddress(long address) {
+		this.address = address;
+	}
+	
+	/**
+	 * Finding the first slot whose key is not smaller than the given key.
+	 * The search halves the range without an early exit so the compiler
+	 * can turn the comparison into a conditional move.
+	 * @param key - key being looked for
+	 * @return slot from 1 to numKeys, or numKeys + 1 if every key is smaller.
+	 * It is also the child to descend into when the key is not in the node.
+	 */
+	public int findKey(long key) {
+		if(numKeys == 0) {
+			return 1;
+		}
+		int base = 1;
+		int n = numKeys;
+		while(n > 1) {
+			int half = n >>> 1;
+			base = keys[base + half] < key ? base + half : base;
+			n -= half;
+		}
+		return keys[base] < key ? base + 1 : base;
+	}
+	
 	
 	/**
 	 * toString method for printing stat and other relevant information
@@ -140,7 +173,7 @@ public class BTreeNode {
 	public String toString() {
 		String returnString = "";
 		for(int i = 1; i <= numKeys; i++) {
-			returnString += keys[i].getKey();
+			returnString += keys[i];
 			if(i < numKeys) {
 				returnString += " ";
 			}
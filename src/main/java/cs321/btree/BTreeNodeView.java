@@ -0,0 +1,172 @@
+package cs321.btree;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Filename: BTreeNodeView.java
+ * Read-only view of a node page. The page is read into a buffer owned by
+ * the view and every field is read straight out of the buffer at its
+ * offset, so visiting a page does not create a BTreeNode or any array.
+ * A view is reused for every page it is pointed at. It can also show a
+ * page held by a BTreePageCache, which is only read through absolute gets
+ * so several threads can show the same page.
+ *
+ * Page layout (same as BTreeNode.serialize):
+ * numKeys (int), isLeaf (int), numKeys x (key (long), frequency (int)),
+ * numKeys + 1 x child address (long)
+ *
+ * Pages of a codec without fixed offsets, such as VarintPageCodec, are
+ * decoded once into a node that the view keeps and reuses.
+ *
+ * @author Harry Nguyen
+ */
+public class BTreeNodeView {
+	private static final int HEADER_SIZE = 8;
+	private static final int KEY_SIZE = 12;
+	private static final int CHILD_SIZE = 8;
+
+	private final ByteBuffer ownPage;
+	private ByteBuffer page;
+	private long address;
+	private int numKeys;
+	private boolean isLeaf;
+	private int childrenOffset;
+	private final PageCodec codec;
+	private final BTreeNode decoded; // null when the fields are read out of the page
+
+	/**
+	 * Constructor of the view of fixed layout pages
+	 * @param nodeSize - size of a page in bytes
+	 */
+	BTreeNodeView(int nodeSize) {
+		this(nodeSize, new FixedPageCodec(), 0);
+	}
+
+	/**
+	 * Constructor of the view of the pages of a codec
+	 * @param nodeSize - size of a page in bytes
+	 * @param codec - format of the pages
+	 * @param degree - degree of the tree, sizes the node pages are decoded into
+	 */
+	BTreeNodeView(int nodeSize, PageCodec codec, int degree) {
+		ownPage = ByteBuffer.allocateDirect(nodeSize);
+		page = ownPage;
+		this.codec = codec;
+		decoded = codec.isFixedLayout() ? null : new BTreeNode(degree, -1);
+	}
+
+	/**
+	 * Getter for the buffer the page is read into
+	 * @return page buffer
+	 */
+	ByteBuffer getPage() {
+		return ownPage;
+	}
+
+	/**
+	 * Reading the header fields after a page has been read into the buffer
+	 * @param address - address of the page
+	 */
+	void wrap(long address) {
+		wrap(ownPage, address);
+	}
+
+	/**
+	 * Showing a page that is held in another buffer, such as a cached page
+	 * @param data - buffer holding the page from index 0
+	 * @param address - address of the page
+	 */
+	void wrap(ByteBuffer data, long address) {
+		this.page = data;
+		this.address = address;
+		if(decoded != null) {
+			codec.decode(data, decoded);
+			numKeys = decoded.getNumKeys();
+			isLeaf = decoded.getIsLeaf();
+			return;
+		}
+		numKeys = page.getInt(0);
+		isLeaf = page.getInt(4) == 1;
+		childrenOffset = HEADER_SIZE + numKeys * KEY_SIZE;
+	}
+
+	/**
+	 * getter for address
+	 * @return address
+	 */
+	public long getAddress() {
+		return address;
+	}
+
+	/**
+	 * getter for numKeys
+	 * @return numKeys
+	 */
+	public int getNumKeys() {
+		return numKeys;
+	}
+
+	/**
+	 * getter for isLeaf
+	 * @return isLeaf
+	 */
+	public boolean getIsLeaf() {
+		return isLeaf;
+	}
+
+	/**
+	 * getter for a key
+	 * @param i - slot of the key, from 1 to numKeys
+	 * @return key
+	 */
+	public long getKey(int i) {
+		if(decoded != null) {
+			return decoded.keys[i];
+		}
+		return page.getLong(HEADER_SIZE + (i - 1) * KEY_SIZE);
+	}
+
+	/**
+	 * getter for a frequency
+	 * @param i - slot of the key, from 1 to numKeys
+	 * @return frequency of the key
+	 */
+	public int getFrequency(int i) {
+		if(decoded != null) {
+			return decoded.frequencies[i];
+		}
+		return page.getInt(HEADER_SIZE + (i - 1) * KEY_SIZE + 8);
+	}
+
+	/**
+	 * Finding the first slot whose key is not smaller than the given key,
+	 * the same search as BTreeNode.findKey on the page buffer
+	 * @param key - key being looked for
+	 * @return slot from 1 to numKeys, or numKeys + 1 if every key is smaller
+	 */
+	public int findKey(long key) {
+		if(numKeys == 0) {
+			return 1;
+		}
+		int base = 1;
+		int n = numKeys;
+		while(n > 1) {
+			int half = n >>> 1;
+			base = getKey(base + half) < key ? base + half : base;
+			n -= half;
+		}
+		return getKey(base) < key ? base + 1 : base;
+	}
+
+	/**
+	 * getter for a child address
+	 * @param i - slot of the child, from 1 to numKeys + 1
+	 * @return address of the child
+	 */
+	public long getChild(int i) {
+		if(decoded != null) {
+			return decoded.children[i];
+		}
+		return page.getLong(childrenOffset + (i - 1) * CHILD_SIZE);
+	}
+}
@@ -0,0 +1,137 @@
+package cs321.btree;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Filename: BTreePageCache.java
+ * Bounded page cache that many reader threads can use at once. Pages are
+ * kept as buffers that are never written after they are cached, so views
+ * on several threads can read the same page without copying it.
+ *
+ * A hit only looks the page up in a ConcurrentHashMap and sets its
+ * referenced bit, no lock is taken. Adding a page takes the lock of the
+ * cache and replaces a page with the CLOCK algorithm when the cache is full.
+ *
+ * @author Harry Nguyen
+ */
+public class BTreePageCache {
+	private final ConcurrentHashMap<Long, Page> pages;
+	private final Page[] slots;
+	private int used;
+	private int hand;
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+
+	/**
+	 * Cached page with its CLOCK bit
+	 */
+	private static class Page {
+		final long address;
+		final ByteBuffer data;
+		volatile boolean referenced;
+
+		Page(long address, ByteBuffer data) {
+			this.address = address;
+			this.data = data;
+		}
+	}
+
+	/**
+	 * Constructor of the page cache
+	 * @param size - maximum number of pages
+	 */
+	public BTreePageCache(int size) {
+		slots = new Page[Math.max(size, 1)];
+		pages = new ConcurrentHashMap<Long, Page>(slots.length * 2);
+	}
+
+	/**
+	 * Looking up a page
+	 * @param address - address of the page
+	 * @return page - the cached page, null if it is not cached
+	 */
+	public ByteBuffer get(long address) {
+		Page page = pages.get(address);
+		if(page == null) {
+			misses.increment();
+			return null;
+		}
+		page.referenced = true;
+		hits.increment();
+		return page.data;
+	}
+
+	/**
+	 * Adding a page that was read from the file, the buffer must not be
+	 * written afterwards. If another thread cached the page first, that
+	 * page is kept.
+	 * @param address - address of the page
+	 * @param data - contents of the page
+	 * @return page - the page that is cached for the address
+	 */
+	public synchronized ByteBuffer put(long address, ByteBuffer data) {
+		Page cached = pages.get(address);
+		if(cached != null) {
+			return cached.data;
+		}
+		Page page = new Page(address, data);
+		if(used < slots.length) {
+			slots[used++] = page;
+		} else {
+			while(slots[hand].referenced) {
+				slots[hand].referenced = false;
+				hand = (hand + 1) % slots.length;
+			}
+			pages.remove(slots[hand].address);
+			slots[hand] = page;
+			hand = (hand + 1) % slots.length;
+		}
+		pages.put(address, page);
+		return data;
+	}
+
+	/**
+	 * Removing every page
+	 */
+	public synchronized void clear() {
+		pages.clear();
+		for(int i = 0; i < used; i++) {
+			slots[i] = null;
+		}
+		used = 0;
+		hand = 0;
+	}
+
+	/**
+	 * Getter for the number of cached pages
+	 * @return size
+	 */
+	public int getSize() {
+		return pages.size();
+	}
+
+	/**
+	 * Calculating the hit ratio
+	 * @return hits divided by lookups, 0 when nothing was looked up
+	 */
+	public double getHitRatio() {
+		long h = hits.sum();
+		long lookups = h + misses.sum();
+		return lookups == 0 ? 0 : (double) h / lookups;
+	}
+
+	/**
+	 * Statistics of the cache
+	 * @return string with the size, lookups, hits and hit ratio
+	 */
+	@Override
+	public String toString() {
+		long h = hits.sum();
+		return "Concurrent page cache with " + pages.size() + " of " + slots.length + " pages\n"
+				+ "Total number of references:        " + (h + misses.sum()) + "\n"
+				+ "Total number of cache hits:        " + h + "\n"
+				+ "Cache hit ratio:                   " + getHitRatio();
+	}
+}
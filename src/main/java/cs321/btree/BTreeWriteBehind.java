@@ -0,0 +1,289 @@
+package cs321.btree;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Filename: BTreeWriteBehind.java
+ * Write-behind queue for node pages. A written node is serialized on the
+ * calling thread into a page buffer taken from a fixed pool and left in the
+ * pending map; a background thread takes all pending pages, sorts them by
+ * address and writes every run of neighbouring pages with one gathering
+ * write. The pool holds at most maxDirtyPages buffers, a writer that finds
+ * it empty waits until the flusher gives buffers back.
+ *
+ * Pages that are pending or being written are served from memory by
+ * readInto(), so readers always see the newest version of a page. The
+ * flusher is the only user of the channel position, the tree itself uses
+ * positional reads and writes.
+ *
+ * @author Harry Nguyen
+ */
+public class BTreeWriteBehind implements Runnable {
+	private final FileChannel file;
+	private final int pageSize;
+	private final PageCodec codec;
+	private final int maxDirtyPages;
+	private final ArrayDeque<ByteBuffer> freePages = new ArrayDeque<ByteBuffer>();
+	private final HashMap<Long, ByteBuffer> pending = new HashMap<Long, ByteBuffer>(); // serialized, not yet taken by the flusher
+	private final HashMap<Long, ByteBuffer> inFlight = new HashMap<Long, ByteBuffer>(); // taken by the flusher, being written
+	private final Thread flusher;
+	private int allocatedPages;
+	private boolean closed;
+	private IOException failure;
+	private long pagesWritten;
+	private long writeCalls;
+
+	/**
+	 * Constructor of the write-behind queue, starts the flusher thread
+	 * @param file - channel of the tree file
+	 * @param codec - format the nodes are written in
+	 * @param pageSize - size of a page in bytes
+	 * @param maxDirtyPages - number of pages that may wait in memory
+	 */
+	BTreeWriteBehind(FileChannel file, PageCodec codec, int pageSize, int maxDirtyPages) {
+		if(maxDirtyPages < 1) {
+			throw new IllegalArgumentException("Write-behind needs at least one page");
+		}
+		this.file = file;
+		this.codec = codec;
+		this.pageSize = pageSize;
+		this.maxDirtyPages = maxDirtyPages;
+		flusher = new Thread(this, "btree-write-behind");
+		flusher.setDaemon(true);
+		flusher.start();
+	}
+
+	/**
+	 * Serializing a node into a pending page, waiting for a free page when
+	 * maxDirtyPages pages are already waiting
+	 * @param n - node being written
+	 * @throws IOException - Throws IO exception if the flusher failed
+	 */
+	synchronized void write(BTreeNode n) throws IOException {
+		checkOpen();
+		ByteBuffer page = pending.get(n.getAddress());
+		if(page == null) {
+			page = takeFreePage();
+			pending.put(n.getAddress(), page);
+			notifyAll();
+		}
+		codec.encode(n, page);
+		while(page.position() < pageSize) { // pages are padded so runs of them can be written back to back
+			page.put((byte) 0);
+		}
+		page.flip();
+	}
+
+	/**
+	 * Copying a page that has not reached the file yet into a buffer
+	 * @param address - address of the page
+	 * @param dest - buffer the page is copied into from position 0
+	 * @return true if the page was pending or being written
+	 */
+	synchronized boolean readInto(long address, ByteBuffer dest) {
+		ByteBuffer page = pending.get(address);
+		if(page == null) {
+			page = inFlight.get(address);
+		}
+		if(page == null) {
+			return false;
+		}
+		ByteBuffer copy = page.duplicate();
+		copy.clear();
+		copy.limit(Math.min(pageSize, dest.capacity()));
+		dest.clear();
+		dest.put(copy);
+		return true;
+	}
+
+	/**
+	 * Waiting until every page written so far is in the file
+	 * @throws IOException - Throws IO exception if the flusher failed
+	 */
+	synchronized void flush() throws IOException {
+		while(failure == null && (!pending.isEmpty() || !inFlight.isEmpty())) {
+			waitForFlusher();
+		}
+		if(failure != null) {
+			throw failure;
+		}
+	}
+
+	/**
+	 * Writing the remaining pages and stopping the flusher thread
+	 * @throws IOException - Throws IO exception if the flusher failed
+	 */
+	void close() throws IOException {
+		synchronized(this) {
+			if(closed) {
+				return;
+			}
+			flush();
+			closed = true;
+			notifyAll();
+		}
+		try {
+			flusher.join();
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while stopping the write-behind thread", e);
+		}
+	}
+
+	/**
+	 * Loop of the flusher thread
+	 */
+	@Override
+	public void run() {
+		long[] addresses = new long[0];
+		ByteBuffer[] run = new ByteBuffer[0];
+		while(true) {
+			int count;
+			synchronized(this) {
+				while(pending.isEmpty() && !closed) {
+					try {
+						wait();
+					} catch(InterruptedException e) {
+						return;
+					}
+				}
+				if(pending.isEmpty()) {
+					return;
+				}
+				count = pending.size();
+				if(addresses.length < count) {
+					addresses = new long[count];
+					run = new ByteBuffer[count];
+				}
+				int i = 0;
+				for(Long address : pending.keySet()) {
+					addresses[i++] = address;
+				}
+				inFlight.putAll(pending);
+				pending.clear();
+			}
+			Arrays.sort(addresses, 0, count);
+			try {
+				int start = 0;
+				while(start < count) {
+					int end = start + 1;
+					while(end < count && addresses[end] == addresses[end - 1] + pageSize) {
+						end++;
+					}
+					for(int i = start; i < end; i++) {
+						run[i - start] = inFlight.get(addresses[i]).duplicate();
+					}
+					writeRun(addresses[start], run, end - start);
+					start = end;
+				}
+			} catch(IOException e) {
+				synchronized(this) {
+					failure = e;
+					notifyAll();
+				}
+				return;
+			}
+			synchronized(this) {
+				for(int i = 0; i < count; i++) {
+					freePages.push(inFlight.remove(addresses[i]));
+				}
+				pagesWritten += count;
+				notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * Writing consecutive pages with one gathering write
+	 * @param address - address of the first page
+	 * @param run - buffers of the pages in address order
+	 * @param length - number of pages in the run
+	 * @throws IOException - Throws IO exception if the write fails
+	 */
+	private void writeRun(long address, ByteBuffer[] run, int length) throws IOException {
+		long remaining = (long) length * pageSize;
+		file.position(address);
+		while(remaining > 0) {
+			remaining -= file.write(run, 0, length);
+		}
+		synchronized(this) {
+			writeCalls++;
+		}
+	}
+
+	/**
+	 * Taking a page buffer from the pool, waiting for the flusher when the
+	 * pool is used up
+	 * @return page - empty page buffer
+	 * @throws IOException - Throws IO exception if the flusher failed
+	 */
+	private ByteBuffer takeFreePage() throws IOException {
+		while(freePages.isEmpty() && allocatedPages == maxDirtyPages) {
+			waitForFlusher();
+			checkOpen();
+		}
+		if(!freePages.isEmpty()) {
+			return freePages.pop();
+		}
+		allocatedPages++;
+		return ByteBuffer.allocateDirect(pageSize);
+	}
+
+	/**
+	 * Waiting for the flusher to finish a batch
+	 * @throws IOException - Throws IO exception if the wait is interrupted
+	 */
+	private void waitForFlusher() throws IOException {
+		try {
+			wait();
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while waiting for the write-behind thread", e);
+		}
+	}
+
+	/**
+	 * Throwing the error of the flusher, or an error when the queue is closed
+	 * @throws IOException - Throws IO exception if the flusher failed
+	 */
+	private void checkOpen() throws IOException {
+		if(failure != null) {
+			throw failure;
+		}
+		if(closed) {
+			throw new IOException("Write-behind queue is closed");
+		}
+	}
+
+	/**
+	 * getter for the number of pages the flusher wrote
+	 * @return pages written
+	 */
+	public synchronized long getPagesWritten() {
+		return pagesWritten;
+	}
+
+	/**
+	 * getter for the number of gathering writes the flusher made
+	 * @return write calls
+	 */
+	public synchronized long getWriteCalls() {
+		return writeCalls;
+	}
+
+	/**
+	 * Statistics of the queue
+	 * @return string with the pages and writes
+	 */
+	@Override
+	public synchronized String toString() {
+		return "Write-behind with " + maxDirtyPages + " pages\n"
+				+ "Pages written: " + pagesWritten + "\n"
+				+ "Gathering writes: " + writeCalls;
+	}
+}
@@ -0,0 +1,86 @@
+package cs321.btree;
+
+/**
+ * Filename: CachePolicy.java
+ * Replacement policy of the BTreeCache. The policy only sees node
+ * addresses; it is told about every hit and every miss and decides which
+ * resident address has to leave the cache to make room on a miss.
+ *
+ * @author Brian Heleker
+ */
+public interface CachePolicy
+{
+    /**
+     * Value returned by miss() when nothing has to be evicted
+     */
+    public static final long NO_EVICTION = -1;
+
+    /**
+     * Names accepted by create()
+     */
+    public static final String[] NAMES = {"lru", "clock", "2q", "arc"};
+
+    /**
+     * Method called when a resident address is accessed
+     * @param address - address of the node
+     */
+    public void hit(long address);
+
+    /**
+     * Method called when an address that is not resident is added to the cache
+     * @param address - address of the node being added
+     * @return - resident address that has to be evicted, or NO_EVICTION
+     */
+    public long miss(long address);
+
+    /**
+     * Method for forgetting every address, resident or remembered
+     */
+    public void clear();
+
+    /**
+     * Getter method for the name of the policy
+     * @return - name of the policy
+     */
+    public String getName();
+
+    /**
+     * Creating a policy from its name
+     * @param name - one of lru, clock, 2q or arc (case insensitive)
+     * @param size - number of nodes the cache can hold
+     * @return - the policy
+     */
+    public static CachePolicy create(String name, int size)
+    {
+        switch (name.toLowerCase())
+        {
+            case "lru":
+                return new LRUCachePolicy(size);
+            case "clock":
+                return new ClockCachePolicy(size);
+            case "2q":
+                return new TwoQueueCachePolicy(size);
+            case "arc":
+                return new ARCCachePolicy(size);
+            default:
+                throw new IllegalArgumentException("Unknown cache policy " + name);
+        }
+    }
+
+    /**
+     * Checking whether a policy name is known
+     * @param name - policy name
+     * @return - true if create() accepts the name
+     */
+    public static boolean isValidName(String name)
+    {
+        for (String known : NAMES)
+        {
+            if (known.equalsIgnoreCase(name))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+}
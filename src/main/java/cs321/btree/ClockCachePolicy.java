@@ -0,0 +1,80 @@
+package cs321.btree;
+
+import java.util.HashMap;
+
+/**
+ * Filename: ClockCachePolicy.java
+ * CLOCK (second chance) replacement. Resident addresses sit in a ring of
+ * slots with a reference bit. A hit only sets the bit; on a miss the hand
+ * clears set bits until it finds a slot whose bit is clear and evicts it.
+ *
+ * @author Brian Heleker
+ */
+public class ClockCachePolicy implements CachePolicy
+{
+    private final long[] slots;
+    private final boolean[] referenced;
+    private final HashMap<Long, Integer> slotOf;
+    private int used;
+    private int hand;
+
+    /**
+     * Constructor for the policy
+     * @param size - number of nodes the cache can hold
+     */
+    public ClockCachePolicy(int size)
+    {
+        slots = new long[size];
+        referenced = new boolean[size];
+        slotOf = new HashMap<Long, Integer>(size * 4 / 3 + 1);
+    }
+
+    @Override
+    public void hit(long address)
+    {
+        Integer slot = slotOf.get(address);
+        if (slot != null)
+        {
+            referenced[slot] = true;
+        }
+    }
+
+    @Override
+    public long miss(long address)
+    {
+        if (used < slots.length)
+        {
+            slots[used] = address;
+            referenced[used] = true;
+            slotOf.put(address, used);
+            used++;
+            return NO_EVICTION;
+        }
+        while (referenced[hand])
+        {
+            referenced[hand] = false;
+            hand = (hand + 1) % slots.length;
+        }
+        long victim = slots[hand];
+        slotOf.remove(victim);
+        slots[hand] = address;
+        referenced[hand] = true;
+        slotOf.put(address, hand);
+        hand = (hand + 1) % slots.length;
+        return victim;
+    }
+
+    @Override
+    public void clear()
+    {
+        slotOf.clear();
+        used = 0;
+        hand = 0;
+    }
+
+    @Override
+    public String getName()
+    {
+        return "CLOCK";
+    }
+}
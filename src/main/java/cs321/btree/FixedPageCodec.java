@@ -0,0 +1,63 @@
+package cs321.btree;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Filename: FixedPageCodec.java
+ * The original page format, every field at a fixed offset:
+ * numKeys (int), isLeaf (int), numKeys x (key (long), frequency (int)),
+ * numKeys + 1 x child address (long)
+ *
+ * @author Harry Nguyen
+ */
+public class FixedPageCodec implements PageCodec
+{
+    private static final int HEADER_SIZE = 8;
+    private static final int KEY_SIZE = 12;
+    private static final int CHILD_SIZE = 8;
+
+    @Override
+    public void encode(BTreeNode node, ByteBuffer page)
+    {
+        node.serialize(page);
+    }
+
+    @Override
+    public void decode(ByteBuffer page, BTreeNode node)
+    {
+        int numKeys = page.getInt(0);
+        node.setNumKeys(numKeys);
+        node.setIsLeaf(page.getInt(4) == 1);
+        int offset = HEADER_SIZE;
+        for (int i = 1; i <= numKeys; i++)
+        {
+            node.keys[i] = page.getLong(offset);
+            node.frequencies[i] = page.getInt(offset + 8);
+            offset += KEY_SIZE;
+        }
+        for (int i = 1; i <= numKeys + 1; i++)
+        {
+            node.children[i] = page.getLong(offset);
+            offset += CHILD_SIZE;
+        }
+    }
+
+    @Override
+    public int maxDegree(int pageSize, int sequenceLength)
+    {
+        // 2t - 1 keys and 2t children: 8 + (2t - 1) * 12 + 2t * 8 <= pageSize
+        return (pageSize - HEADER_SIZE + KEY_SIZE) / (2 * (KEY_SIZE + CHILD_SIZE));
+    }
+
+    @Override
+    public boolean isFixedLayout()
+    {
+        return true;
+    }
+
+    @Override
+    public String getName()
+    {
+        return "fixed";
+    }
+}
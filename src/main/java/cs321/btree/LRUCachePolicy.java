@@ -0,0 +1,61 @@
+package cs321.btree;
+
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+
+/**
+ * Filename: LRUCachePolicy.java
+ * Least-recently-used replacement. Addresses are kept in an insertion
+ * ordered LinkedHashSet, a hit moves the address to the most recent end
+ * and the eldest address is evicted. Every operation is O(1).
+ *
+ * @author Brian Heleker
+ */
+public class LRUCachePolicy implements CachePolicy
+{
+    private final int size;
+    private final LinkedHashSet<Long> order;
+
+    /**
+     * Constructor for the policy
+     * @param size - number of nodes the cache can hold
+     */
+    public LRUCachePolicy(int size)
+    {
+        this.size = size;
+        order = new LinkedHashSet<Long>(size * 4 / 3 + 1);
+    }
+
+    @Override
+    public void hit(long address)
+    {
+        order.remove(address);
+        order.add(address);
+    }
+
+    @Override
+    public long miss(long address)
+    {
+        long victim = NO_EVICTION;
+        if (order.size() >= size)
+        {
+            Iterator<Long> eldest = order.iterator();
+            victim = eldest.next();
+            eldest.remove();
+        }
+        order.add(address);
+        return victim;
+    }
+
+    @Override
+    public void clear()
+    {
+        order.clear();
+    }
+
+    @Override
+    public String getName()
+    {
+        return "LRU";
+    }
+}
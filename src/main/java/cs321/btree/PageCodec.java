@@ -0,0 +1,92 @@
+package cs321.btree;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Filename: PageCodec.java
+ * Format of the node pages in the file. A codec turns a BTreeNode into
+ * the bytes of its page and back, and tells how large the degree may be
+ * so that a full node always fits in a page.
+ *
+ * @author Harry Nguyen
+ */
+public interface PageCodec
+{
+    /**
+     * Names accepted by create()
+     */
+    public static final String[] NAMES = {"fixed", "varint"};
+
+    /**
+     * Method for writing a node into a page buffer
+     * @param node - the node being written
+     * @param page - buffer cleared by the codec, the page starts at index 0
+     * and the position is left after its last byte
+     */
+    public void encode(BTreeNode node, ByteBuffer page);
+
+    /**
+     * Method for reading a page into a node
+     * @param page - buffer holding the page from index 0, read with absolute gets
+     * @param node - node receiving the keys, its arrays must be large enough
+     */
+    public void decode(ByteBuffer page, BTreeNode node);
+
+    /**
+     * Method for finding the largest degree whose full nodes fit in a page
+     * @param pageSize - size of a page in bytes
+     * @param sequenceLength - length of the k-mers, keys use 2 bits per base
+     * @return - the largest degree
+     */
+    public int maxDegree(int pageSize, int sequenceLength);
+
+    /**
+     * Method telling whether the fields of a page are at fixed offsets, so a
+     * BTreeNodeView can read them straight out of the page
+     * @return - true if every key, frequency and child is at a fixed offset
+     */
+    public boolean isFixedLayout();
+
+    /**
+     * Getter method for the name of the codec
+     * @return - name of the codec
+     */
+    public String getName();
+
+    /**
+     * Creating a codec from its name
+     * @param name - fixed or varint (case insensitive)
+     * @param pageSize - size of a page in bytes
+     * @param firstPage - address of the first page, pages follow it back to back
+     * @return - the codec
+     */
+    public static PageCodec create(String name, int pageSize, long firstPage)
+    {
+        switch (name.toLowerCase())
+        {
+            case "fixed":
+                return new FixedPageCodec();
+            case "varint":
+                return new VarintPageCodec(pageSize, firstPage);
+            default:
+                throw new IllegalArgumentException("Unknown page codec " + name);
+        }
+    }
+
+    /**
+     * Checking whether a codec name is known
+     * @param name - codec name
+     * @return - true if create() accepts the name
+     */
+    public static boolean isValidName(String name)
+    {
+        for (String known : NAMES)
+        {
+            if (known.equalsIgnoreCase(name))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+}
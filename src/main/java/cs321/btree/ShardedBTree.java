@@ -0,0 +1,385 @@
+package cs321.btree;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Properties;
+
+/**
+ * Filename: ShardedBTree.java
+ * Set of B Trees that split the k-mer space by the leading bases of the
+ * keys. With 2^b shards, the b leading bits of the 2k-bit key choose the
+ * shard, so every shard holds one contiguous range of keys and shard i
+ * only holds keys smaller than the keys of shard i + 1. The shards can be
+ * built on separate threads since they share nothing.
+ *
+ * A manifest file (base file name + ".shards") lists the shard files, the
+ * sequence length and the degree so a search can open the shards and route
+ * every key to its shard.
+ *
+ * @author Harry Nguyen
+ */
+public class ShardedBTree implements Closeable {
+	public static final String MANIFEST_SUFFIX = ".shards";
+
+	private final int sequenceLength;
+	private final int degree;
+	private final int shardBits;
+	private final BTree[] shards;
+	private final File[] shardFiles;
+	private final File manifest;
+
+	/**
+	 * Constructor creating or opening the shards of a tree
+	 * @param degree - degree of every shard
+	 * @param sequenceLength - Length of DNA sequence to process
+	 * @param baseFile - file name the shard and manifest names are built from
+	 * @param shardCount - number of shards, a power of 2 that is at most 4^sequenceLength
+	 * @param useCache - Boolean value that determines if every shard uses a cache
+	 * @param cacheSize - Size of the cache of every shard
+	 * @param cachePolicy - replacement policy of the caches: lru, clock, 2q or arc
+	 */
+	public ShardedBTree(int degree, int sequenceLength, File baseFile, int shardCount, boolean useCache, int cacheSize, String cachePolicy) {
+		this(degree, sequenceLength, baseFile, shardCount, useCache, cacheSize, cachePolicy, "fixed");
+	}
+
+	/**
+	 * Constructor creating or opening the shards of a tree with a page format
+	 * @param degree - degree of every shard, 0 for the largest degree a page can hold
+	 * @param sequenceLength - Length of DNA sequence to process
+	 * @param baseFile - file name the shard and manifest names are built from
+	 * @param shardCount - number of shards, a power of 2 that is at most 4^sequenceLength
+	 * @param useCache - Boolean value that determines if every shard uses a cache
+	 * @param cacheSize - Size of the cache of every shard
+	 * @param cachePolicy - replacement policy of the caches: lru, clock, 2q or arc
+	 * @param pageCodec - format of the node pages of new shards: fixed or varint
+	 */
+	public ShardedBTree(int degree, int sequenceLength, File baseFile, int shardCount, boolean useCache, int cacheSize, String cachePolicy, String pageCodec) {
+		this(degree, sequenceLength, baseFile, shardCount, useCache, cacheSize, cachePolicy, pageCodec, BTree.DEFAULT_PAGE_SIZE);
+	}
+
+	/**
+	 * Constructor creating or opening the shards of a tree with a page format and a page size
+	 * @param degree - degree of every shard, 0 for the largest degree a page can hold
+	 * @param sequenceLength - Length of DNA sequence to process
+	 * @param baseFile - file name the shard and manifest names are built from
+	 * @param shardCount - number of shards, a power of 2 that is at most 4^sequenceLength
+	 * @param useCache - Boolean value that determines if every shard uses a cache
+	 * @param cacheSize - Size of the cache of every shard
+	 * @param cachePolicy - replacement policy of the caches: lru, clock, 2q or arc
+	 * @param pageCodec - format of the node pages of new shards: fixed or varint
+	 * @param pageSize - size of the pages of new shards, a power of 2 from 4096 to 65536
+	 */
+	public ShardedBTree(int degree, int sequenceLength, File baseFile, int shardCount, boolean useCache, int cacheSize, String cachePolicy, String pageCodec, int pageSize) {
+		if(shardCount < 1 || Integer.bitCount(shardCount) != 1) {
+			throw new IllegalArgumentException("The number of shards must be a power of 2");
+		}
+		this.shardBits = Integer.numberOfTrailingZeros(shardCount);
+		if(shardBits > 2 * sequenceLength) {
+			throw new IllegalArgumentException("More shards than " + sequenceLength + "-mers");
+		}
+		this.sequenceLength = sequenceLength;
+		this.manifest = new File(baseFile.getPath() + MANIFEST_SUFFIX);
+		shards = new BTree[shardCount];
+		shardFiles = new File[shardCount];
+		for(int i = 0; i < shardCount; i++) {
+			shardFiles[i] = shardFile(baseFile, i);
+			shards[i] = new BTree(degree, sequenceLength, shardFiles[i], useCache, cacheSize, cachePolicy, pageCodec, pageSize);
+		}
+		this.degree = shards[0].getDegree(); // the degree picked from the page size when it was 0
+	}
+
+	/**
+	 * Constructor opening the shards listed in a manifest
+	 * @param manifest - manifest written by closeTree()
+	 * @param useCache - Boolean value that determines if every shard uses a cache
+	 * @param cacheSize - Size of the cache of every shard
+	 * @param cachePolicy - replacement policy of the caches: lru, clock, 2q or arc
+	 * @throws IOException - Throws IO exception if the manifest can not be read
+	 */
+	public ShardedBTree(File manifest, boolean useCache, int cacheSize, String cachePolicy) throws IOException {
+		Properties properties = new Properties();
+		try(Reader reader = new FileReader(manifest)) {
+			properties.load(reader);
+		}
+		this.manifest = manifest;
+		try {
+			sequenceLength = Integer.parseInt(properties.getProperty("length"));
+			degree = Integer.parseInt(properties.getProperty("degree"));
+			int shardCount = Integer.parseInt(properties.getProperty("shards"));
+			shardBits = Integer.numberOfTrailingZeros(shardCount);
+			shards = new BTree[shardCount];
+			shardFiles = new File[shardCount];
+			for(int i = 0; i < shardCount; i++) {
+				String name = properties.getProperty("shard." + i);
+				if(name == null) {
+					throw new IOException("Manifest " + manifest + " does not list shard " + i);
+				}
+				shardFiles[i] = new File(manifest.getAbsoluteFile().getParentFile(), name);
+				if(!shardFiles[i].exists()) {
+					throw new IOException("Shard file " + shardFiles[i] + " is missing");
+				}
+				shards[i] = new BTree(degree, sequenceLength, shardFiles[i], useCache, cacheSize, cachePolicy);
+			}
+		} catch(NumberFormatException | NullPointerException e) {
+			throw new IOException("Manifest " + manifest + " is not valid", e);
+		}
+	}
+
+	/**
+	 * Naming the file of a shard
+	 * @param baseFile - file name the shard names are built from
+	 * @param index - index of the shard
+	 * @return file of the shard
+	 */
+	public static File shardFile(File baseFile, int index) {
+		return new File(baseFile.getPath() + ".shard" + index);
+	}
+
+	/**
+	 * Finding the shard of a key from its leading bits
+	 * @param key - encoded sequence
+	 * @return index of the shard
+	 */
+	public int shardOf(long key) {
+		return shardBits == 0 ? 0 : (int) (key >>> (2 * sequenceLength - shardBits));
+	}
+
+	/**
+	 * getter for one shard
+	 * @param index - index of the shard
+	 * @return shard tree
+	 */
+	public BTree getShard(int index) {
+		return shards[index];
+	}
+
+	/**
+	 * getter for the number of shards
+	 * @return shard count
+	 */
+	public int getShardCount() {
+		return shards.length;
+	}
+
+	/**
+	 * getter for the sequence length of the shards
+	 * @return sequenceLength
+	 */
+	public int getSequenceLength() {
+		return sequenceLength;
+	}
+
+	/**
+	 * getter for the canonical flag, which every shard holds in its metadata
+	 * @return canonical - true if the shards hold canonical k-mers
+	 */
+	public boolean isCanonical() {
+		return shards[0].isCanonical();
+	}
+
+	/**
+	 * setter for the canonical flag of every shard, before any key is inserted
+	 * @param canonical - true if only canonical k-mers are inserted
+	 */
+	public void setCanonical(boolean canonical) {
+		for(BTree shard : shards) {
+			shard.setCanonical(canonical);
+		}
+	}
+
+	/**
+	 * getter for whether an append to any shard did not finish
+	 * @return incomplete - true if a shard has the incomplete flag set
+	 */
+	public boolean isIncomplete() {
+		for(BTree shard : shards) {
+			if(shard.isIncomplete()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Starting to add keys to shards that were built before, see BTree.beginAppend()
+	 * @throws IOException - Throws IO exception if the metadata can not be written
+	 */
+	public void beginAppend() throws IOException {
+		for(BTree shard : shards) {
+			shard.beginAppend();
+		}
+	}
+
+	/**
+	 * getter for the manifest file
+	 * @return manifest
+	 */
+	public File getManifest() {
+		return manifest;
+	}
+
+	/**
+	 * Inserting a key into its shard
+	 * @param key - the key that being inserted
+	 * @throws IOException - throwing exceptions if there are issues
+	 */
+	public void insert(long key) throws IOException {
+		shards[shardOf(key)].insert(key);
+	}
+
+	/**
+	 * Adding occurrences of a key in its shard
+	 * @param key - the key that being inserted
+	 * @param delta - number of occurrences to add
+	 * @throws IOException - throwing exceptions if there are issues
+	 */
+	public void insert(long key, int delta) throws IOException {
+		shards[shardOf(key)].insert(key, delta);
+	}
+
+	/**
+	 * returning the frequency of the key if it exist
+	 * @param key - key value of the node
+	 * @return frequency of the key, 0 if it is not in the tree
+	 * @throws IOException - Throws IO exception if there are issues
+	 */
+	public long searchTwo(long key) throws IOException {
+		return shards[shardOf(key)].searchTwo(key);
+	}
+
+	/**
+	 * Looking up many keys, every shard answers its keys with one batch search
+	 * @param keys - keys to look up, in any order and with duplicates
+	 * @return frequencies - frequency of keys[i] at index i, 0 if it is not in the tree
+	 * @throws IOException - Throws IO exception if there are issues
+	 */
+	public long[] searchBatch(long[] keys) throws IOException {
+		int[] counts = new int[shards.length + 1];
+		for(long key : keys) {
+			counts[shardOf(key) + 1]++;
+		}
+		for(int i = 1; i <= shards.length; i++) {
+			counts[i] += counts[i - 1];
+		}
+		long[] grouped = new long[keys.length]; // keys grouped by shard, shard i starts at counts[i]
+		int[] positions = new int[keys.length]; // index in keys of every grouped key
+		int[] next = counts.clone();
+		for(int i = 0; i < keys.length; i++) {
+			int slot = next[shardOf(keys[i])]++;
+			grouped[slot] = keys[i];
+			positions[slot] = i;
+		}
+		long[] frequencies = new long[keys.length];
+		for(int shard = 0; shard < shards.length; shard++) {
+			if(counts[shard] == counts[shard + 1]) {
+				continue;
+			}
+			long[] part = new long[counts[shard + 1] - counts[shard]];
+			System.arraycopy(grouped, counts[shard], part, 0, part.length);
+			long[] found = shards[shard].searchBatch(part);
+			for(int i = 0; i < found.length; i++) {
+				frequencies[positions[counts[shard] + i]] = found[i];
+			}
+		}
+		return frequencies;
+	}
+
+	/**
+	 * Switching every shard to read-only use by several threads at once
+	 * @param cachePages - size of the shared page cache of every shard, 0 for no cache
+	 * @throws IOException - Throws IO exception if the pending writes fail
+	 */
+	public void enableConcurrentReads(int cachePages) throws IOException {
+		for(BTree shard : shards) {
+			shard.enableConcurrentReads(cachePages);
+		}
+	}
+
+	/**
+	 * Handing node writes of every shard to a background thread
+	 * @param maxDirtyPages - number of pages that may wait in memory per shard
+	 */
+	public void enableWriteBehind(int maxDirtyPages) {
+		for(BTree shard : shards) {
+			shard.enableWriteBehind(maxDirtyPages);
+		}
+	}
+
+	/**
+	 * Creates a dump file with the keys of every shard, in order
+	 * @param fileName - file name of dump file
+	 */
+	public void dump(String fileName) {
+		try(OutputStream stream = new BufferedOutputStream(new FileOutputStream(fileName), 1 << 16)) {
+			for(BTree shard : shards) {
+				shard.dump(stream);
+			}
+		} catch(IOException e) {
+			System.err.println(e);
+		}
+	}
+
+	/**
+	 * Inserting the keys of every shard into the sequences table, in order
+	 * @param connection - connection to a database with a sequences table
+	 * @return rows - number of rows inserted
+	 * @throws SQLException - Throws SQL exception if the rows can not be inserted
+	 * @throws IOException - Throws IO exception if a shard can not be read
+	 */
+	public long dumpSQL(Connection connection) throws SQLException, IOException {
+		long rows = 0;
+		for(BTree shard : shards) {
+			rows += shard.dumpSQL(connection);
+		}
+		return rows;
+	}
+
+	/**
+	 * Writing the metadata of every shard and the manifest
+	 * @throws IOException - Throws IO exception if there are issues
+	 */
+	public void closeTree() throws IOException {
+		for(BTree shard : shards) {
+			shard.closeTree();
+		}
+		Properties properties = new Properties();
+		properties.setProperty("length", Integer.toString(sequenceLength));
+		properties.setProperty("degree", Integer.toString(degree));
+		properties.setProperty("shards", Integer.toString(shards.length));
+		for(int i = 0; i < shards.length; i++) {
+			properties.setProperty("shard." + i, shardFiles[i].getName());
+		}
+		try(Writer writer = new FileWriter(manifest)) {
+			properties.store(writer, "Shards of a BTree split by the leading bases of the keys");
+		}
+	}
+
+	/**
+	 * Closing the files of every shard
+	 * @throws IOException - Throws IO exception if there are issues
+	 */
+	@Override
+	public void close() throws IOException {
+		IOException failure = null;
+		for(BTree shard : shards) {
+			try {
+				shard.close();
+			} catch(IOException e) {
+				failure = e;
+			}
+		}
+		if(failure != null) {
+			throw failure;
+		}
+	}
+}
@@ -0,0 +1,106 @@
+package cs321.btree;
+
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+
+/**
+ * Filename: TwoQueueCachePolicy.java
+ * 2Q replacement (Johnson and Shasha). New addresses enter the FIFO A1in.
+ * Addresses pushed out of A1in are remembered, without their node, in the
+ * ghost FIFO A1out. Only an address that is missed again while it is in
+ * A1out is promoted to the LRU queue Am. A single scan, such as an in order
+ * dump, therefore passes through A1in and does not flush the hot nodes in Am.
+ *
+ * @author Brian Heleker
+ */
+public class TwoQueueCachePolicy implements CachePolicy
+{
+    private final int size;
+    private final int inSize; // Kin, target size of A1in
+    private final int outSize; // Kout, number of remembered addresses
+    private final LinkedHashSet<Long> in;
+    private final LinkedHashSet<Long> out;
+    private final LinkedHashSet<Long> main;
+
+    /**
+     * Constructor for the policy
+     * @param size - number of nodes the cache can hold
+     */
+    public TwoQueueCachePolicy(int size)
+    {
+        this.size = size;
+        inSize = Math.max(1, size / 4);
+        outSize = Math.max(1, size / 2);
+        in = new LinkedHashSet<Long>();
+        out = new LinkedHashSet<Long>();
+        main = new LinkedHashSet<Long>();
+    }
+
+    @Override
+    public void hit(long address)
+    {
+        if (main.remove(address))
+        {
+            main.add(address);
+        }
+        // hits in A1in are correlated references and leave the FIFO unchanged
+    }
+
+    @Override
+    public long miss(long address)
+    {
+        long victim = NO_EVICTION;
+        if (in.size() + main.size() >= size)
+        {
+            if (in.size() > inSize || main.isEmpty())
+            {
+                victim = removeFirst(in);
+                out.add(victim);
+                if (out.size() > outSize)
+                {
+                    removeFirst(out);
+                }
+            }
+            else
+            {
+                victim = removeFirst(main);
+            }
+        }
+        if (out.remove(address))
+        {
+            main.add(address);
+        }
+        else
+        {
+            in.add(address);
+        }
+        return victim;
+    }
+
+    /**
+     * Removing the eldest address of a queue
+     * @param queue - queue to remove from
+     * @return - the removed address
+     */
+    private static long removeFirst(LinkedHashSet<Long> queue)
+    {
+        Iterator<Long> eldest = queue.iterator();
+        long address = eldest.next();
+        eldest.remove();
+        return address;
+    }
+
+    @Override
+    public void clear()
+    {
+        in.clear();
+        out.clear();
+        main.clear();
+    }
+
+    @Override
+    public String getName()
+    {
+        return "2Q";
+    }
+}
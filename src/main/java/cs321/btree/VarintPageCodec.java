@@ -0,0 +1,169 @@
+package cs321.btree;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Filename: VarintPageCodec.java
+ * Compact page format. Keys are sorted, so every key is stored as its
+ * difference to the previous key, and keys and frequencies are written as
+ * varints (7 bits per byte, the high bit set on every byte but the last).
+ * Children are stored as 32-bit page numbers counted from the first page,
+ * and leaves store no children at all:
+ * numKeys (varint), isLeaf (byte), numKeys x (key delta (varint),
+ * frequency (varint)), numKeys + 1 x child page (int) for inner nodes
+ *
+ * Short k-mers need only a few bytes per key, so more keys fit in a page.
+ * The degree is chosen from the worst case of every field, so a full node
+ * always fits whatever its keys are.
+ *
+ * @author Harry Nguyen
+ */
+public class VarintPageCodec implements PageCodec
+{
+    private static final int MAX_HEADER_SIZE = 4; // numKeys below 2^21 and the leaf byte
+    private static final int MAX_FREQUENCY_SIZE = 5;
+    private static final int CHILD_SIZE = 4;
+
+    private final int pageSize;
+    private final long firstPage;
+
+    /**
+     * Constructor of the codec
+     * @param pageSize - size of a page in bytes
+     * @param firstPage - address of the first page, pages follow it back to back
+     */
+    public VarintPageCodec(int pageSize, long firstPage)
+    {
+        this.pageSize = pageSize;
+        this.firstPage = firstPage;
+    }
+
+    @Override
+    public void encode(BTreeNode node, ByteBuffer page)
+    {
+        page.clear();
+        int numKeys = node.getNumKeys();
+        putVarint(page, numKeys);
+        page.put((byte) (node.getIsLeaf() ? 1 : 0));
+        long previous = 0;
+        for (int i = 1; i <= numKeys; i++)
+        {
+            putVarint(page, node.keys[i] - previous);
+            putVarint(page, node.frequencies[i] & 0xffffffffL);
+            previous = node.keys[i];
+        }
+        if (!node.getIsLeaf())
+        {
+            for (int i = 1; i <= numKeys + 1; i++)
+            {
+                page.putInt((int) ((node.children[i] - firstPage) / pageSize));
+            }
+        }
+    }
+
+    @Override
+    public void decode(ByteBuffer page, BTreeNode node)
+    {
+        int offset = 0; // read with absolute gets, cached pages are shared by threads
+        int numKeys = (int) getVarint(page, offset);
+        offset += varintSize(numKeys);
+        boolean isLeaf = page.get(offset++) == 1;
+        node.setNumKeys(numKeys);
+        node.setIsLeaf(isLeaf);
+        long key = 0;
+        for (int i = 1; i <= numKeys; i++)
+        {
+            long delta = getVarint(page, offset);
+            offset += varintSize(delta);
+            key += delta;
+            node.keys[i] = key;
+            long frequency = getVarint(page, offset);
+            offset += varintSize(frequency);
+            node.frequencies[i] = (int) frequency;
+        }
+        for (int i = 1; i <= numKeys + 1; i++)
+        {
+            if (isLeaf)
+            {
+                node.children[i] = -1;
+            }
+            else
+            {
+                node.children[i] = firstPage + (long) page.getInt(offset) * pageSize;
+                offset += CHILD_SIZE;
+            }
+        }
+    }
+
+    @Override
+    public int maxDegree(int pageSize, int sequenceLength)
+    {
+        int keySize = varintSize((1L << (2 * sequenceLength)) - 1);
+        // 2t - 1 keys and 2t children: 4 + (2t - 1) * (key + 5) + 2t * 4 <= pageSize
+        return (pageSize - MAX_HEADER_SIZE + keySize + MAX_FREQUENCY_SIZE) / (2 * (keySize + MAX_FREQUENCY_SIZE + CHILD_SIZE));
+    }
+
+    @Override
+    public boolean isFixedLayout()
+    {
+        return false;
+    }
+
+    @Override
+    public String getName()
+    {
+        return "varint";
+    }
+
+    /**
+     * Writing a value that is not negative as a varint
+     * @param page - buffer the bytes are put into
+     * @param value - value being written
+     */
+    private static void putVarint(ByteBuffer page, long value)
+    {
+        while ((value & ~0x7fL) != 0)
+        {
+            page.put((byte) ((value & 0x7f) | 0x80));
+            value >>>= 7;
+        }
+        page.put((byte) value);
+    }
+
+    /**
+     * Reading a varint. putVarint writes the fewest bytes a value needs, so
+     * the caller moves past it by varintSize of the value.
+     * @param page - buffer holding the page from index 0
+     * @param offset - offset of the varint
+     * @return - value of the varint
+     */
+    private static long getVarint(ByteBuffer page, int offset)
+    {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do
+        {
+            b = page.get(offset++);
+            value |= (long) (b & 0x7f) << shift;
+            shift += 7;
+        } while (b < 0);
+        return value;
+    }
+
+    /**
+     * Counting the bytes of a varint
+     * @param value - value that is not negative
+     * @return - number of bytes putVarint writes for the value
+     */
+    static int varintSize(long value)
+    {
+        int size = 1;
+        while ((value & ~0x7fL) != 0)
+        {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+}
@@ -0,0 +1,134 @@
+package cs321.common;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Filename: KmerDecoder.java
+ * Table-driven decoder turning 2-bit encoded k-mers back into a, c, g, t.
+ * Every byte of the key holds 4 bases, so a lookup table of 256 entries
+ * gives the 4 characters of a byte at once. The characters are written
+ * into a reusable byte array, and dump lines are written straight to an
+ * output stream without building strings.
+ *
+ * A decoder is not thread-safe, every thread needs its own.
+ *
+ * @author Harry Nguyen
+ */
+public class KmerDecoder
+{
+    private static final byte[] BASES = {'a', 'c', 'g', 't'};
+    private static final byte[] QUADS = new byte[256 * 4]; // the 4 bases of every byte, first base in the high bits
+
+    static {
+        for (int i = 0; i < 256; i++) {
+            QUADS[4 * i] = BASES[(i >>> 6) & 3];
+            QUADS[4 * i + 1] = BASES[(i >>> 4) & 3];
+            QUADS[4 * i + 2] = BASES[(i >>> 2) & 3];
+            QUADS[4 * i + 3] = BASES[i & 3];
+        }
+    }
+
+    private final int sequenceLength;
+    private final byte[] line; // bases, a space, up to 20 digits and a new line
+
+    /**
+     * Constructor of the decoder
+     * @param sequenceLength - length k of the k-mers, between 1 and 31
+     */
+    public KmerDecoder(int sequenceLength)
+    {
+        this.sequenceLength = sequenceLength;
+        this.line = new byte[sequenceLength + 22];
+    }
+
+    /**
+     * Method for writing the bases of a k-mer into an array
+     * @param kmer - encoded k-mer
+     * @param dest - array receiving the k lower case bases
+     * @param offset - index of the first base in dest
+     * @return index in dest after the last base
+     */
+    public int decode(long kmer, byte[] dest, int offset)
+    {
+        return decode(kmer, sequenceLength, dest, offset);
+    }
+
+    /**
+     * Method for writing the bases of a k-mer of any length into an array
+     * @param kmer - encoded k-mer
+     * @param sequenceLength - length k of the k-mer
+     * @param dest - array receiving the k lower case bases
+     * @param offset - index of the first base in dest
+     * @return index in dest after the last base
+     */
+    public static int decode(long kmer, int sequenceLength, byte[] dest, int offset)
+    {
+        int shift = 2 * sequenceLength;
+        int single = sequenceLength & 3; // leading bases that do not fill a byte
+        for (int i = 0; i < single; i++) {
+            shift -= 2;
+            dest[offset++] = BASES[(int) (kmer >>> shift) & 3];
+        }
+        while (shift > 0) {
+            shift -= 8;
+            int quad = ((int) (kmer >>> shift) & 0xff) << 2;
+            dest[offset] = QUADS[quad];
+            dest[offset + 1] = QUADS[quad + 1];
+            dest[offset + 2] = QUADS[quad + 2];
+            dest[offset + 3] = QUADS[quad + 3];
+            offset += 4;
+        }
+        return offset;
+    }
+
+    /**
+     * Method for converting a k-mer into a DNA string
+     * @param kmer - encoded k-mer
+     * @return DNA sequence of lower case bases
+     */
+    public String decode(long kmer)
+    {
+        int length = decode(kmer, line, 0);
+        return new String(line, 0, length, StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Method for writing a dump line "bases frequency" for a k-mer
+     * @param kmer - encoded k-mer
+     * @param frequency - number of occurrences, not negative
+     * @param out - stream the line is written to, best a buffered one
+     * @throws IOException - Throws IO exception if the stream has issues
+     */
+    public void writeLine(long kmer, long frequency, OutputStream out) throws IOException
+    {
+        int end = decode(kmer, line, 0);
+        line[end++] = ' ';
+        int digits = end;
+        do {
+            line[end++] = (byte) ('0' + frequency % 10);
+            frequency /= 10;
+        } while (frequency > 0);
+        for (int i = digits, j = end - 1; i < j; i++, j--) { // digits were written backwards
+            byte digit = line[i];
+            line[i] = line[j];
+            line[j] = digit;
+        }
+        line[end++] = '\n';
+        out.write(line, 0, end);
+    }
+
+    /**
+     * Method for converting a k-mer into a DNA string without keeping a decoder
+     * @param kmer - encoded k-mer
+     * @param sequenceLength - length k of the k-mer
+     * @return DNA sequence of lower case bases
+     */
+    public static String toDNAString(long kmer, int sequenceLength)
+    {
+        byte[] bases = new byte[sequenceLength];
+        decode(kmer, sequenceLength, bases, 0);
+        return new String(bases, StandardCharsets.ISO_8859_1);
+    }
+}
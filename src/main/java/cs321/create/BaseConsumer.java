@@ -0,0 +1,25 @@
+package cs321.create;
+
+import java.io.IOException;
+
+/**
+ * Filename: BaseConsumer.java
+ * Callback receiving the bases of the ORIGIN blocks as 2-bit codes
+ *
+ * @author Harry Nguyen
+ */
+public interface BaseConsumer
+{
+    /**
+     * Method called for every base of a sequence
+     * @param code - 0 to 3 for a, c, g, t, negative for an ambiguous base
+     * @throws IOException - Throws IO exception if there are issues
+     */
+    public void addCode(int code) throws IOException;
+
+    /**
+     * Method called when an ORIGIN block ends
+     * @throws IOException - Throws IO exception if there are issues
+     */
+    public void endSequence() throws IOException;
+}
@@ -0,0 +1,49 @@
+package cs321.create;
+
+import java.io.IOException;
+
+/**
+ * Filename: BaseFanOut.java
+ * Hands every base of the parser to several consumers, so one pass over a
+ * GenBank file can feed one rolling encoder per k-mer length
+ *
+ * @author Harry Nguyen
+ */
+public class BaseFanOut implements BaseConsumer
+{
+    private final BaseConsumer[] consumers;
+
+    /**
+     * Constructor of the fan-out
+     * @param consumers - consumers receiving every base, in this order
+     */
+    public BaseFanOut(BaseConsumer... consumers)
+    {
+        this.consumers = consumers.clone();
+    }
+
+    /**
+     * Method handing a base to every consumer
+     * @param code - 0 to 3 for a, c, g, t, negative for an ambiguous base
+     * @throws IOException - Throws IO exception if a consumer has issues
+     */
+    @Override
+    public void addCode(int code) throws IOException
+    {
+        for (BaseConsumer consumer : consumers) {
+            consumer.addCode(code);
+        }
+    }
+
+    /**
+     * Method ending the record for every consumer
+     * @throws IOException - Throws IO exception if a consumer has issues
+     */
+    @Override
+    public void endSequence() throws IOException
+    {
+        for (BaseConsumer consumer : consumers) {
+            consumer.endSequence();
+        }
+    }
+}
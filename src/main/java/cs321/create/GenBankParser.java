@@ -0,0 +1,451 @@
+package cs321.create;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Filename: GenBankParser.java
+ * Scans the ORIGIN blocks of a GenBank (*.gbk) file byte by byte through a
+ * memory mapping of the file. Line numbers and whitespace are skipped with a
+ * lookup table and every base is handed to a BaseConsumer as a 2-bit code,
+ * so no Strings are built and no record is held in memory.
+ *
+ * Files larger than 2 GB are mapped in consecutive windows.
+ *
+ * For parallel parsing, findSequences() returns where the sequence lines of
+ * every ORIGIN block are and parseRange() encodes any part of one of them.
+ * scanRange() finds the sequence lines of one part of the file on its own,
+ * so the parts can be scanned in parallel too.
+ *
+ * @author Harry Nguyen
+ */
+public class GenBankParser
+{
+    private static final long WINDOW_SIZE = 1L << 30;
+
+    // values of the byte table besides the base codes 0 to 3
+    private static final byte AMBIGUOUS = -1;
+    private static final byte SKIP = -2;
+    private static final byte END = -3;
+    private static final byte[] BYTE_CLASSES = new byte[256];
+
+    private static final byte[] ORIGIN = {'O', 'R', 'I', 'G', 'I', 'N'};
+
+    // parser states
+    private static final int HEADER = 0;
+    private static final int ORIGIN_LINE = 1;
+    private static final int SEQUENCE = 2;
+
+    // states of scanRange(), below them the characters of ORIGIN matched on a header line, -1 if none
+    private static final int SCAN_ORIGIN_LINE = ORIGIN.length;
+    private static final int SCAN_SEQUENCE = ORIGIN.length + 1;
+
+    static {
+        for (int i = 0; i < BYTE_CLASSES.length; i++) {
+            BYTE_CLASSES[i] = (byte) KmerEncoder.baseCode(i);
+        }
+        for (int i = '0'; i <= '9'; i++) {
+            BYTE_CLASSES[i] = SKIP;
+        }
+        BYTE_CLASSES[' '] = BYTE_CLASSES['\t'] = BYTE_CLASSES['\r'] = BYTE_CLASSES['\n'] = SKIP;
+        BYTE_CLASSES['/'] = END;
+    }
+
+    private final File file;
+    private int records;
+    private long bases;
+
+    /**
+     * Constructor of the parser
+     * @param file - GenBank file to scan
+     */
+    public GenBankParser(File file)
+    {
+        this.file = file;
+    }
+
+    /**
+     * Method for scanning the whole file and feeding every ORIGIN block to the consumer
+     * @param consumer - receives the bases and the end of every block
+     * @throws IOException - Throws IO exception if the file can not be read
+     */
+    public void parse(BaseConsumer consumer) throws IOException
+    {
+        records = 0;
+        bases = 0;
+        int state = HEADER;
+        int matched = 0; // characters of ORIGIN matched at the start of a header line, -1 if none
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+            long size = channel.size();
+            for (long position = 0; position < size; position += WINDOW_SIZE) {
+                MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(WINDOW_SIZE, size - position));
+                int limit = window.limit();
+                for (int i = 0; i < limit; i++) {
+                    byte b = window.get(i);
+                    if (state == SEQUENCE) {
+                        int code = BYTE_CLASSES[b & 0xff];
+                        if (code >= AMBIGUOUS) {
+                            consumer.addCode(code);
+                            bases++;
+                        } else if (code == END) {
+                            consumer.endSequence();
+                            records++;
+                            state = HEADER;
+                            matched = -1;
+                        }
+                    } else if (b == '\n') {
+                        if (state == ORIGIN_LINE) {
+                            state = SEQUENCE;
+                        }
+                        matched = 0;
+                    } else if (state == HEADER && matched >= 0) {
+                        if (b == ORIGIN[matched]) {
+                            matched++;
+                            if (matched == ORIGIN.length) {
+                                state = ORIGIN_LINE;
+                            }
+                        } else {
+                            matched = -1;
+                        }
+                    }
+                }
+            }
+        }
+        if (state != HEADER) { // file ended without the closing //
+            consumer.endSequence();
+            records++;
+        }
+    }
+
+    /**
+     * Method for finding the sequence lines of every ORIGIN block without
+     * looking at the bases
+     * @return - start and end offset of every block, block i is [2i, 2i + 1),
+     * the end is the offset of the closing // or the end of the file
+     * @throws IOException - Throws IO exception if the file can not be read
+     */
+    public long[] findSequences() throws IOException
+    {
+        long[] ranges = new long[16];
+        int count = 0;
+        int state = HEADER;
+        int matched = 0;
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+            long size = channel.size();
+            for (long position = 0; position < size; position += WINDOW_SIZE) {
+                MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(WINDOW_SIZE, size - position));
+                int limit = window.limit();
+                for (int i = 0; i < limit; i++) {
+                    byte b = window.get(i);
+                    if (state == SEQUENCE) {
+                        if (b == '/') {
+                            ranges[count++] = position + i;
+                            state = HEADER;
+                            matched = -1;
+                        }
+                    } else if (b == '\n') {
+                        if (state == ORIGIN_LINE) {
+                            state = SEQUENCE;
+                            if (count + 2 > ranges.length) {
+                                ranges = Arrays.copyOf(ranges, ranges.length * 2);
+                            }
+                            ranges[count++] = position + i + 1;
+                        }
+                        matched = 0;
+                    } else if (state == HEADER && matched >= 0) {
+                        if (b == ORIGIN[matched]) {
+                            matched++;
+                            if (matched == ORIGIN.length) {
+                                state = ORIGIN_LINE;
+                            }
+                        } else {
+                            matched = -1;
+                        }
+                    }
+                }
+            }
+            if (state == SEQUENCE) { // file ended without the closing //
+                ranges[count++] = size;
+            }
+        }
+        return Arrays.copyOf(ranges, count);
+    }
+
+    /**
+     * Method for finding the sequence lines that lie in [start, end) without
+     * knowing the state of the parser at start. The range is scanned once for
+     * each state the parser can be in at start (in a header, on the ORIGIN
+     * line or in the sequence lines); the scans meet after the first / that
+     * follows a line break and go on as one from there. The caller picks the
+     * scan of the actual state, known from the range before, see RangeScan.
+     * @param start - offset of the first byte of the range
+     * @param end - offset after the last byte of the range
+     * @return scan - sequence lines of the range for every state at start
+     * @throws IOException - Throws IO exception if the file can not be read
+     */
+    public RangeScan scanRange(long start, long end) throws IOException
+    {
+        int[] states = new int[3];
+        long[][] events = new long[3][16]; // starts and ends of the sequence lines of every scan
+        int[] counts = new int[3];
+        int[] starts = new int[3];
+        int scans = 3;
+        int merged = 0; // events of the first scan at the time the scans met
+        int mergedStarts = 0;
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+            end = Math.min(end, channel.size());
+            states[0] = headerState(channel, start);
+            states[1] = SCAN_ORIGIN_LINE;
+            states[2] = SCAN_SEQUENCE;
+            for (long position = start; position < end; position += WINDOW_SIZE) {
+                MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(WINDOW_SIZE, end - position));
+                int limit = window.limit();
+                for (int i = 0; i < limit; i++) {
+                    byte b = window.get(i);
+                    for (int s = 0; s < scans; s++) {
+                        int state = states[s];
+                        int next = nextState(state, b);
+                        if (next != state) {
+                            if (next == SCAN_SEQUENCE) {
+                                if (counts[s] == events[s].length) {
+                                    events[s] = Arrays.copyOf(events[s], counts[s] * 2);
+                                }
+                                events[s][counts[s]++] = position + i + 1;
+                                starts[s]++;
+                            } else if (state == SCAN_SEQUENCE) {
+                                if (counts[s] == events[s].length) {
+                                    events[s] = Arrays.copyOf(events[s], counts[s] * 2);
+                                }
+                                events[s][counts[s]++] = position + i;
+                            }
+                            states[s] = next;
+                        }
+                    }
+                    if (scans == 3 && states[0] == states[1] && states[1] == states[2]) {
+                        scans = 1;
+                        merged = counts[0];
+                        mergedStarts = starts[0];
+                    }
+                }
+            }
+        }
+        return new RangeScan(start, end, states, events, counts, starts, merged, mergedStarts, scans == 1);
+    }
+
+    /**
+     * Method for finding the state of the parser at start in case it is in a
+     * header, from the bytes of the line before start
+     * @param channel - channel of the file
+     * @param start - offset to find the state at
+     * @return state - characters of ORIGIN matched on the line before start, -1 if none
+     * @throws IOException - Throws IO exception if the file can not be read
+     */
+    private static int headerState(FileChannel channel, long start) throws IOException
+    {
+        int length = (int) Math.min(start, ORIGIN.length);
+        ByteBuffer line = ByteBuffer.allocate(length);
+        while (line.hasRemaining()) {
+            if (channel.read(line, start - length + line.position()) < 0) {
+                break;
+            }
+        }
+        int lineStart = 0;
+        for (int i = length - 1; i >= 0; i--) {
+            if (line.get(i) == '\n') {
+                lineStart = i + 1;
+                break;
+            }
+        }
+        if (lineStart == 0 && length < start) { // the line began before the bytes read
+            return -1;
+        }
+        int matched = length - lineStart;
+        if (matched == ORIGIN.length) {
+            return -1;
+        }
+        for (int i = 0; i < matched; i++) {
+            if (line.get(lineStart + i) != ORIGIN[i]) {
+                return -1;
+            }
+        }
+        return matched;
+    }
+
+    /**
+     * Method for moving the state of scanRange() over one byte, the same way parse() does
+     * @param state - state before the byte
+     * @param b - byte of the file
+     * @return state - state after the byte
+     */
+    private static int nextState(int state, byte b)
+    {
+        if (state == SCAN_SEQUENCE) {
+            return BYTE_CLASSES[b & 0xff] == END ? -1 : SCAN_SEQUENCE;
+        }
+        if (b == '\n') {
+            return state == SCAN_ORIGIN_LINE ? SCAN_SEQUENCE : 0;
+        }
+        if (state >= 0 && state < SCAN_ORIGIN_LINE) {
+            return b == ORIGIN[state] ? state + 1 : -1;
+        }
+        return state;
+    }
+
+    /**
+     * Method for encoding the bases of one piece of a block found by
+     * findSequences() or scanRange(). The bases that start in [start, end)
+     * are handed to the consumer, followed by up to extraBases bases after
+     * end so that a k-mer starting before end is complete with
+     * extraBases = k - 1. The extra bases stop at the closing // of the block.
+     * endSequence() is not called.
+     * @param start - offset of the first byte of the piece
+     * @param end - offset after the last byte of the piece
+     * @param blockEnd - end of the block the piece belongs to, or the end of the file if it is not known
+     * @param extraBases - number of bases to read past end
+     * @param consumer - receives the bases
+     * @throws IOException - Throws IO exception if the file can not be read
+     */
+    public void parseRange(long start, long end, long blockEnd, int extraBases, BaseConsumer consumer) throws IOException
+    {
+        int remaining = extraBases;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+            long position = start;
+            while (position < blockEnd) {
+                long length = Math.min(blockEnd - position, Math.max(end - position, 0) + 4096); // the piece and room for the extra bases
+                MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(length, WINDOW_SIZE));
+                int limit = window.limit();
+                for (int i = 0; i < limit; i++) {
+                    boolean extra = position + i >= end;
+                    if (extra && remaining == 0) {
+                        return;
+                    }
+                    int code = BYTE_CLASSES[window.get(i) & 0xff];
+                    if (code >= AMBIGUOUS) {
+                        consumer.addCode(code);
+                        if (extra) {
+                            remaining--;
+                        }
+                    } else if (code == END) {
+                        return;
+                    }
+                }
+                position += limit;
+            }
+        }
+    }
+
+    /**
+     * Getter method for the number of ORIGIN blocks found by the last parse
+     * @return - number of records
+     */
+    public int getRecords()
+    {
+        return records;
+    }
+
+    /**
+     * Getter method for the number of bases found by the last parse
+     * @return - number of bases, ambiguous ones included
+     */
+    public long getBases()
+    {
+        return bases;
+    }
+
+    /**
+     * Sequence lines of one range of the file found by scanRange(), for every
+     * state the parser can be in at the start of the range. The ranges of a
+     * file are chained in order: the state of the first one is FILE_START and
+     * the state of every other one is the end state of the one before.
+     */
+    public static class RangeScan
+    {
+        public static final int FILE_START = 0;
+
+        private final long[][] sequences = new long[3][];
+        private final int[] blockStarts = new int[3];
+        private final int[] endStates = new int[3];
+
+        /**
+         * Constructor of the scan, from the events of the three scans of the range
+         * @param start - offset of the first byte of the range
+         * @param end - offset after the last byte of the range
+         * @param states - states of the scans at end
+         * @param events - starts and ends of the sequence lines found by every scan
+         * @param counts - number of events of every scan
+         * @param starts - number of blocks started in every scan
+         * @param merged - events of the first scan when the scans met
+         * @param mergedStarts - blocks started in the first scan when the scans met
+         * @param met - true if the scans met, then only the first one went on
+         */
+        private RangeScan(long start, long end, int[] states, long[][] events, int[] counts, int[] starts,
+                          int merged, int mergedStarts, boolean met)
+        {
+            for (int s = 0; s < 3; s++) {
+                int tail = met && s > 0 ? counts[0] - merged : 0;
+                int endState = met ? states[0] : states[s];
+                int open = s == 2 ? 1 : 0;
+                long[] ranges = new long[open + counts[s] + tail + (endState == SCAN_SEQUENCE ? 1 : 0)];
+                if (open == 1) {
+                    ranges[0] = start;
+                }
+                System.arraycopy(events[s], 0, ranges, open, counts[s]);
+                System.arraycopy(events[0], merged, ranges, open + counts[s], tail);
+                if (endState == SCAN_SEQUENCE) {
+                    ranges[ranges.length - 1] = end;
+                }
+                sequences[s] = ranges;
+                blockStarts[s] = starts[s] + (met && s > 0 ? starts[0] - mergedStarts : 0);
+                endStates[s] = endState;
+            }
+        }
+
+        /**
+         * Getter method for the sequence lines of the range
+         * @param state - state of the parser at the start of the range
+         * @return - start and end offset of every piece of sequence lines, piece i is [2i, 2i + 1)
+         */
+        public long[] getSequences(int state)
+        {
+            return sequences[scan(state)];
+        }
+
+        /**
+         * Getter method for the number of ORIGIN blocks whose sequence lines start in the range
+         * @param state - state of the parser at the start of the range
+         * @return - number of blocks
+         */
+        public int getBlockStarts(int state)
+        {
+            return blockStarts[scan(state)];
+        }
+
+        /**
+         * Getter method for the state of the parser at the end of the range
+         * @param state - state of the parser at the start of the range
+         * @return - state at the end, the state at the start of the next range
+         */
+        public int getEndState(int state)
+        {
+            return endStates[scan(state)];
+        }
+
+        /**
+         * Method for finding the scan of a state
+         * @param state - state of the parser at the start of the range
+         * @return - index of the scan
+         */
+        private static int scan(int state)
+        {
+            return state == SCAN_SEQUENCE ? 2 : state == SCAN_ORIGIN_LINE ? 1 : 0;
+        }
+    }
+}
@@ -1,6 +1,9 @@
 package cs321.create;
 
 import cs321.btree.BTree;
+import cs321.btree.CachePolicy;
+import cs321.btree.PageCodec;
+import cs321.btree.ShardedBTree;
 import cs321.common.ParseArgumentException;
 
 import java.io.*;
@@ -28,6 +31,17 @@ public class GeneBankCreateBTree
     static int debugLevel; // an optional argument with a default value of zero.
     static int cacheSize; // maximum number of BTreeNode objects that can be stored in memory
     static int originalDegree; // initial degree
+    static String cachePolicy = "lru"; // replacement policy of the cache: lru, clock, 2q or arc
+    static int writeBehindPages; // dirty pages the background writer may hold, 0 to write on the inserting thread
+    static int shards; // number of trees the k-mers are split into by their leading bases, 1 for a single tree
+    static int countMapEntries; // distinct k-mers counted in memory before they are added to the tree, 0 to insert every k-mer
+    static int threads; // threads encoding the input, 1 to parse and encode on the main thread
+    static boolean sqlPragmas; // turns off the journal and syncing of the SQLite database while it is loaded
+    static boolean canonical; // stores min(k-mer, reverse complement) so both strands share one key
+    static int[] lengths; // sequence lengths built from one pass over the file, null for the single --length tree
+    static String pageCodec = "fixed"; // format of the node pages: fixed or varint
+    static int pageSize = BTree.DEFAULT_PAGE_SIZE; // bytes of every node page, the degree 0 picks fills a page
+    static boolean append; // adds the k-mers to the tree built before instead of starting a new file
 
 	
 	/**
@@ -46,64 +60,75 @@ public class GeneBankCreateBTree
     		sequenceLength = gC.getSubsequenceLength();
     		cacheSize = gC.getCacheSize();
     		debugLevel = gC.getDebugLevel();
+    		cachePolicy = gC.getCachePolicy();
+    		writeBehindPages = gC.getWriteBehindPages();
+    		shards = gC.getShards();
+    		countMapEntries = gC.getCountMapEntries();
+    		threads = gC.getThreads();
+    		sqlPragmas = gC.useSQLPragmas();
+    		canonical = gC.isCanonical();
+    		lengths = gC.getLengths();
+    		pageCodec = gC.getPageCodec();
+    		pageSize = gC.getPageSize();
+    		append = gC.isAppend();
     		String fileToRead = gbk_file;
     		BTree tree;
     		
     		String newFileName = gbk_file.replace("data/files_gbk/", "");  
     		newFileName += ".btree.data." + sequenceLength + "." + originalDegree; // file name
-    		if(usingCache == 0) {
-    			tree = new BTree(degree, sequenceLength, new File(newFileName));    		
-    		} else {
-    			tree = new BTree(degree, sequenceLength, new File(newFileName), true, cacheSize);
+    		if(shards > 1) {
+    			buildShards(newFileName, fileToRead);
+    			return;
+    		}
+    		if(lengths != null) {
+    			buildLengths(fileToRead);
+    			return;
+    		}
+    		tree = openTree(newFileName, sequenceLength);
+    		if(writeBehindPages > 0) {
+    			tree.enableWriteBehind(writeBehindPages);
     		}
-    		BufferedReader reader = new BufferedReader(new FileReader(fileToRead));
-    		String readLine = reader.readLine();
-    		if(debugLevel == 2) {
+    		GenBankParser parser = new GenBankParser(new File(fileToRead));
+    		KmerCountMap counts = countMapEntries > 0 ? new KmerCountMap(countMapEntries, tree::insert) : null;
+    		KmerEncoder encoder = new KmerEncoder(sequenceLength, canonical, counts != null ? counts : tree::insert);
+    		if(threads > 1) { // records and pieces of long records are encoded in parallel, the counts are merged here
     			long startTime = System.currentTimeMillis();
-        		while(readLine != null) {
-        			if(readLine.contains("ORIGIN")) {
-        				buildTreeFromContents(reader, tree, sequenceLength);
-        			}
-        			readLine = reader.readLine();
-        		}
+    			new ParallelKmerCounter(new File(fileToRead), sequenceLength, canonical, threads).count(counts != null ? counts::add : tree::insert);
+    			if(counts != null) {
+    				counts.flush();
+    			}
+    			if(debugLevel == 2) {
+    				System.out.println("Time to build tree -> " + (System.currentTimeMillis() - startTime));
+    			}
+    		} else if(debugLevel == 2) {
+    			long startTime = System.currentTimeMillis();
+    			parser.parse(new RecordTimer(encoder));
+    			if(counts != null) {
+    				counts.flush();
+    			}
         		System.out.println("Time to build tree -> " + (System.currentTimeMillis() - startTime));
     		} else {
-        		while(readLine != null) {
-        			if(readLine.contains("ORIGIN")) {
-        				buildTreeFromContents(reader, tree, sequenceLength);
-        			}
-        			readLine = reader.readLine();
-        		}
+    			parser.parse(encoder);
+    			if(counts != null) {
+    				counts.flush();
+    			}
     		}
 
-    		reader.close();
     		String SQLDumpName = gbk_file.replace("data/files_gbk/", "") + "." + sequenceLength + ".SQL.db";
     		if(debugLevel > 0) {
     			String dumpName = "dump";
     			tree.dump(dumpName);
-    			try {
-    				// create a database connection
-    				Connection connection = DriverManager.getConnection("jdbc:sqlite:" + SQLDumpName);
-    				Statement statement = connection.createStatement();
-    				statement.executeUpdate("drop table if exists sequences");
-    				statement.executeUpdate("CREATE table sequences (DNA string, frequency integer)");
-    				tree.dumpSQL(statement);
-    			} catch(SQLException e) {
-    	    		System.out.println("There was an error vreating the SQL Database");
-    	    	}
+    			writeDatabase(SQLDumpName, tree::dumpSQL);
     			tree.closeTree();
     			tree.close();
+    			if(tree.getCache() != null) {
+    				System.out.println(tree.getCache());
+    			}
+    			if(tree.getWriteBehind() != null) {
+    				System.out.println(tree.getWriteBehind());
+    			}
     		} else {
-    			try {
-    				// create a database connection
-    				Connection connection = DriverManager.getConnection("jdbc:sqlite:" + SQLDumpName);
-    				Statement statement = connection.createStatement();
-    				statement.executeUpdate("drop table if exists sequences");
-    				statement.executeUpdate("CREATE table sequences (DNA string, frequency integer)");
-    				tree.dumpSQL(statement); 				
-    			} catch(SQLException e) {
-    	    		System.err.println("There was an error vreating the SQL Database");
-    	    	}
+    			writeDatabase(SQLDumpName, tree::dumpSQL);
     			tree.closeTree();
     			tree.close();
     		}
@@ -116,6 +141,210 @@ public class GeneBankCreateBTree
 		}
     }
 
+	/**
+	 * 
+	 * Building the tree as shards that are filled on one thread each, the
+	 * manifest is written next to the shard files
+	 * 
+	 * @param newFileName - name the shard and manifest files are built from
+	 * @param fileToRead - the input *.gbk file
+	 * @throws IOException - throws exceptions if there is any issue
+	 */
+    private static void buildShards(String newFileName, String fileToRead) throws IOException
+    {
+    	File baseFile = new File(newFileName);
+    	File manifest = new File(newFileName + ShardedBTree.MANIFEST_SUFFIX);
+    	if(!append) {
+    		manifest.delete();
+    		for(int i = 0; i < shards; i++) {
+    			ShardedBTree.shardFile(baseFile, i).delete();
+    		}
+    	} else if(!manifest.exists()) {
+    		printUsageAndExit("There is no shard manifest " + manifest + " to append to!");
+    	}
+    	ShardedBTree tree = new ShardedBTree(degree, sequenceLength, baseFile, shards, usingCache == 1, cacheSize, cachePolicy, pageCodec, pageSize);
+    	if(append) {
+    		checkAppend(manifest.getPath(), sequenceLength, tree.getSequenceLength(), tree.isCanonical(), tree.isIncomplete());
+    		tree.beginAppend();
+    	} else {
+    		tree.setCanonical(canonical);
+    	}
+    	if(writeBehindPages > 0) {
+    		tree.enableWriteBehind(writeBehindPages);
+    	}
+    	long startTime = System.currentTimeMillis();
+    	ShardedTreeBuilder builder = new ShardedTreeBuilder(tree, countMapEntries);
+    	if(threads > 1) {
+    		new ParallelKmerCounter(new File(fileToRead), sequenceLength, canonical, threads).count(builder);
+    	} else {
+    		new GenBankParser(new File(fileToRead)).parse(new KmerEncoder(sequenceLength, canonical, builder));
+    	}
+    	builder.finish();
+    	if(debugLevel == 2) {
+    		System.out.println("Time to build " + shards + " shards -> " + (System.currentTimeMillis() - startTime));
+    	}
+
+    	String SQLDumpName = gbk_file.replace("data/files_gbk/", "") + "." + sequenceLength + ".SQL.db";
+    	if(debugLevel > 0) {
+    		tree.dump("dump");
+    	}
+    	writeDatabase(SQLDumpName, tree::dumpSQL);
+    	tree.closeTree();
+    	tree.close();
+    	if(debugLevel > 0) {
+    		System.out.println("Shard manifest: " + tree.getManifest());
+    	}
+    }
+
+	/**
+	 * 
+	 * Building one tree for every sequence length of --lengths in a single
+	 * pass over the file. Every length has its own rolling encoder, count
+	 * map and tree, the parser hands every base to all of the encoders.
+	 * 
+	 * @param fileToRead - the input *.gbk file
+	 * @throws IOException - throws exceptions if there is any issue
+	 */
+    private static void buildLengths(String fileToRead) throws IOException
+    {
+    	BTree[] trees = new BTree[lengths.length];
+    	KmerCountMap[] counts = new KmerCountMap[lengths.length];
+    	BaseConsumer[] encoders = new BaseConsumer[lengths.length];
+    	for(int i = 0; i < lengths.length; i++) {
+    		String newFileName = gbk_file.replace("data/files_gbk/", "") + ".btree.data." + lengths[i] + "." + originalDegree;
+    		trees[i] = openTree(newFileName, lengths[i]);
+    		if(writeBehindPages > 0) {
+    			trees[i].enableWriteBehind(writeBehindPages);
+    		}
+    		if(countMapEntries > 0) { // the entries are shared by the lengths
+    			counts[i] = new KmerCountMap(Math.max(countMapEntries / lengths.length, 1), trees[i]::insert);
+    		}
+    		encoders[i] = new KmerEncoder(lengths[i], canonical, counts[i] != null ? counts[i] : trees[i]::insert);
+    	}
+    	long startTime = System.currentTimeMillis();
+    	BaseConsumer fanOut = new BaseFanOut(encoders);
+    	new GenBankParser(new File(fileToRead)).parse(debugLevel == 2 ? new RecordTimer(fanOut) : fanOut);
+    	for(KmerCountMap count : counts) {
+    		if(count != null) {
+    			count.flush();
+    		}
+    	}
+    	if(debugLevel == 2) {
+    		System.out.println("Time to build " + lengths.length + " trees -> " + (System.currentTimeMillis() - startTime));
+    	}
+
+    	for(int i = 0; i < lengths.length; i++) {
+    		if(debugLevel > 0) {
+    			trees[i].dump("dump." + lengths[i]);
+    		}
+    		writeDatabase(gbk_file.replace("data/files_gbk/", "") + "." + lengths[i] + ".SQL.db", trees[i]::dumpSQL);
+    		trees[i].closeTree();
+    		trees[i].close();
+    		if(debugLevel > 0 && trees[i].getCache() != null) {
+    			System.out.println(trees[i].getCache());
+    		}
+    	}
+    }
+
+	/**
+	 * 
+	 * Opening the tree of a build. An append opens the tree that was built
+	 * before and marks it incomplete until closeTree(), any other build
+	 * starts from an empty file.
+	 * 
+	 * @param newFileName - file of the tree
+	 * @param length - sequence length of the tree
+	 * @return tree - the tree the k-mers are inserted into
+	 * @throws IOException - throws exceptions if the tree can not be opened
+	 */
+    private static BTree openTree(String newFileName, int length) throws IOException
+    {
+    	File treeFile = new File(newFileName);
+    	if(!append) {
+    		treeFile.delete();
+    	} else if(!treeFile.exists()) {
+    		printUsageAndExit("There is no BTree file " + newFileName + " to append to!");
+    	}
+    	BTree tree = new BTree(degree, length, treeFile, usingCache == 1, cacheSize, cachePolicy, pageCodec, pageSize);
+    	if(append) {
+    		checkAppend(newFileName, length, tree.getSequenceLength(), tree.isCanonical(), tree.isIncomplete());
+    		tree.beginAppend();
+    	} else {
+    		tree.setCanonical(canonical);
+    	}
+    	return tree;
+    }
+
+	/**
+	 * 
+	 * Checking that the k-mers of this run can be appended to a tree built before
+	 * 
+	 * @param fileName - file of the tree, for the error message
+	 * @param length - sequence length of this run
+	 * @param treeLength - sequence length of the tree
+	 * @param treeCanonical - whether the tree holds canonical k-mers
+	 * @param incomplete - whether an earlier append to the tree did not finish
+	 */
+    private static void checkAppend(String fileName, int length, int treeLength, boolean treeCanonical, boolean incomplete)
+    {
+    	if(incomplete) {
+    		printUsageAndExit("An earlier append to " + fileName + " did not finish, the tree has to be rebuilt!");
+    	}
+    	if(treeLength != length) {
+    		printUsageAndExit("The sequence length does not match " + fileName + "!");
+    	}
+    	if(treeCanonical != canonical) {
+    		printUsageAndExit("The --canonical setting does not match " + fileName + "!");
+    	}
+    }
+
+	/**
+	 * 
+	 * Writing the sequences of the tree into a new sequences table of a SQLite
+	 * database. The rows are inserted in batches inside large transactions by
+	 * the tree, the index on DNA is built once after all rows are in. A
+	 * metadata table records whether the k-mers are canonical.
+	 * 
+	 * @param SQLDumpName - file of the database
+	 * @param export - dumpSQL of the tree
+	 * @throws IOException - throws exceptions if the tree can not be read
+	 */
+    private static void writeDatabase(String SQLDumpName, SQLExport export) throws IOException
+    {
+    	long startTime = System.nanoTime();
+    	try(Connection connection = DriverManager.getConnection("jdbc:sqlite:" + SQLDumpName);
+    			Statement statement = connection.createStatement()) {
+    		if(sqlPragmas) { // the database is rebuilt from the tree anyway, so a crash while loading loses nothing
+    			statement.execute("PRAGMA journal_mode = OFF");
+    			statement.execute("PRAGMA synchronous = OFF");
+    		}
+    		statement.executeUpdate("drop table if exists sequences");
+    		statement.executeUpdate("CREATE table sequences (DNA string, frequency integer)");
+    		long rows = export.dumpSQL(connection);
+    		statement.executeUpdate("CREATE index sequences_dna on sequences (DNA)");
+    		statement.executeUpdate("drop table if exists metadata"); // tells GeneBankSearchDatabase how the k-mers were stored
+    		statement.executeUpdate("CREATE table metadata (canonical integer)");
+    		statement.executeUpdate("insert into metadata values(" + (canonical ? 1 : 0) + ")");
+    		if(debugLevel > 0) {
+    			double seconds = (System.nanoTime() - startTime) / 1e9;
+    			System.out.println("SQL export: " + rows + " rows in " + String.format("%.2f", seconds) + " s -> "
+    					+ String.format("%.0f", rows / Math.max(seconds, 1e-9)) + " rows/sec");
+    		}
+    	} catch(SQLException e) {
+    		System.err.println("There was an error vreating the SQL Database");
+    	}
+    }
+
+	/**
+	 * 
+	 * Exporting the rows of a tree through a database connection
+	 * 
+	 */
+    private interface SQLExport
+    {
+    	long dumpSQL(Connection connection) throws SQLException, IOException;
+    }
+
 	/**
 	 * 
 	 * printing the usage and error messages, and exiting the program 
@@ -125,7 +354,7 @@ public class GeneBankCreateBTree
     private static void printUsageAndExit(String errorMessage)
     {
         System.out.println("java -jar build/libs/GeneBankCreateBTree.jar --cache=<0|1>  --degree=<btree degree>" 
-        + " --gbkfile=<gbk file> --length=<sequence length> [--cachesize=<n>] [--debug=0|1|2]"); // usage of create b tree
+        + " --gbkfile=<gbk file> --length=<sequence length> [--lengths=<k>,<k>,...] [--cachesize=<n>] [--cachepolicy=lru|clock|2q|arc] [--writebehind=<pages>] [--shards=<power of 2>] [--countmap=<entries>] [--threads=<n>] [--sqlpragmas=0|1] [--canonical=0|1] [--pagecodec=fixed|varint] [--pagesize=<4096..65536>] [--append=0|1] [--debug=0|1|2]"); // usage of create b tree
         System.err.println(errorMessage); // error message
         System.exit(1); // exiting program 
     }
@@ -143,8 +372,18 @@ public class GeneBankCreateBTree
     {	
     	try {
     		debugLevel = 0;
+    		writeBehindPages = 0;
+    		shards = 1;
+    		countMapEntries = GeneBankCreateBTreeArguments.DEFAULT_COUNT_MAP_ENTRIES;
+    		threads = 1;
+    		sqlPragmas = false;
+    		canonical = false;
+    		lengths = null;
+    		pageCodec = "fixed";
+    		pageSize = BTree.DEFAULT_PAGE_SIZE;
+    		append = false;
     		//checking valid number of arguments
-    		if(args.length < 4 || args.length > 6) {
+    		if(args.length < 4 || args.length > 17) {
     			printUsageAndExit("Invalid number of arguments!");
     		}
     		for(int i = 0; i < args.length; i++) {
@@ -155,22 +394,87 @@ public class GeneBankCreateBTree
     	    			printUsageAndExit("Invalid cache usage!");
     	    		}
     			} else if(args[i].contains("--degree=")) {
-    	    		degree = originalDegree = Integer.parseInt(args[i].substring(9));
-    	    		if(degree == 0) {
-    	    			degree = 10;
-    	    		} 
+    	    		degree = originalDegree = Integer.parseInt(args[i].substring(9)); // 0 lets the tree pick the largest degree a page holds
     			} else if(args[i].contains("--gbkfile=")) {
-	    			gbk_file = args[2].substring(10);
+	    			gbk_file = args[i].substring(10);
 	    		} else if(args[i].contains("--length=")) {
 	        		sequenceLength = Integer.parseInt(args[i].substring(9));
 	        		if(sequenceLength < 1 || sequenceLength > 31) {
 	        			printUsageAndExit("Invalid subsequence length!");
 	        		}
+	    		} else if(args[i].contains("--lengths=")) {
+	    			String[] values = args[i].substring(10).split(",");
+	    			lengths = new int[values.length];
+	    			for(int j = 0; j < values.length; j++) {
+	    				lengths[j] = Integer.parseInt(values[j].trim());
+	    				if(lengths[j] < 1 || lengths[j] > 31) {
+	    					printUsageAndExit("Invalid subsequence length!");
+	    				}
+	    				for(int l = 0; l < j; l++) {
+	    					if(lengths[l] == lengths[j]) {
+	    						printUsageAndExit("Every subsequence length may only be given once!");
+	    					}
+	    				}
+	    			}
+	    			sequenceLength = lengths[0];
 	    		} else if(args[i].contains("--cachesize=")) {
 	    			cacheSize = Integer.parseInt(args[i].substring(12));
 	    			if(cacheSize < 100 || cacheSize > 5000) {
 	    				printUsageAndExit("Invalid cache size!");
 	    			}
+	    		} else if(args[i].contains("--cachepolicy=")) {
+	    			cachePolicy = args[i].substring(14);
+	    			if(!CachePolicy.isValidName(cachePolicy)) {
+	    				printUsageAndExit("Invalid cache policy!");
+	    			}
+	    		} else if(args[i].contains("--writebehind=")) {
+	    			writeBehindPages = Integer.parseInt(args[i].substring(14));
+	    			if(writeBehindPages < 0) {
+	    				printUsageAndExit("Invalid number of write-behind pages!");
+	    			}
+	    		} else if(args[i].contains("--shards=")) {
+	    			shards = Integer.parseInt(args[i].substring(9));
+	    			if(shards < 1 || Integer.bitCount(shards) != 1) {
+	    				printUsageAndExit("Invalid number of shards, it must be a power of 2!");
+	    			}
+	    		} else if(args[i].contains("--countmap=")) {
+	    			countMapEntries = Integer.parseInt(args[i].substring(11));
+	    			if(countMapEntries < 0 || countMapEntries > (1 << 29)) {
+	    				printUsageAndExit("Invalid number of count map entries!");
+	    			}
+	    		} else if(args[i].contains("--threads=")) {
+	    			threads = Integer.parseInt(args[i].substring(10));
+	    			if(threads < 1) {
+	    				printUsageAndExit("Invalid number of threads!");
+	    			}
+	    		} else if(args[i].contains("--sqlpragmas=")) {
+	    			int pragmas = Integer.parseInt(args[i].substring(13));
+	    			if(pragmas != 0 && pragmas != 1) {
+	    				printUsageAndExit("Invalid SQL pragma usage!");
+	    			}
+	    			sqlPragmas = pragmas == 1;
+	    		} else if(args[i].contains("--canonical=")) {
+	    			int canonicalKeys = Integer.parseInt(args[i].substring(12));
+	    			if(canonicalKeys != 0 && canonicalKeys != 1) {
+	    				printUsageAndExit("Invalid canonical usage!");
+	    			}
+	    			canonical = canonicalKeys == 1;
+	    		} else if(args[i].contains("--pagecodec=")) {
+	    			pageCodec = args[i].substring(12);
+	    			if(!PageCodec.isValidName(pageCodec)) {
+	    				printUsageAndExit("Invalid page codec!");
+	    			}
+	    		} else if(args[i].contains("--pagesize=")) {
+	    			pageSize = Integer.parseInt(args[i].substring(11));
+	    			if(pageSize < BTree.MIN_PAGE_SIZE || pageSize > BTree.MAX_PAGE_SIZE || Integer.bitCount(pageSize) != 1) {
+	    				printUsageAndExit("Invalid page size, it must be a power of 2 from 4096 to 65536!");
+	    			}
+	    		} else if(args[i].contains("--append=")) {
+	    			int appendKeys = Integer.parseInt(args[i].substring(9));
+	    			if(appendKeys != 0 && appendKeys != 1) {
+	    				printUsageAndExit("Invalid append usage!");
+	    			}
+	    			append = appendKeys == 1;
 	    		} else if(args[i].contains("--debug=")) {
 	    			debugLevel = Integer.parseInt(args[i].substring(8));
 	    			if (debugLevel < 0 || debugLevel > 2) {
@@ -178,12 +482,27 @@ public class GeneBankCreateBTree
 	    			}
 	    		}
     		}
+    		if(lengths != null && (shards > 1 || threads > 1)) {
+    			printUsageAndExit("--lengths can not be combined with --shards or --threads!");
+    		}
+    		GeneBankCreateBTreeArguments arguments;
     		if(usingCache == 0) {
-    			return new GeneBankCreateBTreeArguments(0, degree, gbk_file, sequenceLength, cacheSize, debugLevel);
+    			arguments = new GeneBankCreateBTreeArguments(0, degree, gbk_file, sequenceLength, cacheSize, debugLevel, cachePolicy);
     		}
     		else {
-    			return new GeneBankCreateBTreeArguments(1, degree, gbk_file, sequenceLength, cacheSize, debugLevel);
-    		}   		
+    			arguments = new GeneBankCreateBTreeArguments(1, degree, gbk_file, sequenceLength, cacheSize, debugLevel, cachePolicy);
+    		}
+    		arguments.setWriteBehindPages(writeBehindPages);
+    		arguments.setShards(shards);
+    		arguments.setCountMapEntries(countMapEntries);
+    		arguments.setThreads(threads);
+    		arguments.setSQLPragmas(sqlPragmas);
+    		arguments.setCanonical(canonical);
+    		arguments.setLengths(lengths);
+    		arguments.setPageCodec(pageCodec);
+    		arguments.setPageSize(pageSize);
+    		arguments.setAppend(append);
+    		return arguments;
     	} catch(Exception e) {
     		printUsageAndExit("Incorrect argument format");
     		return null;
@@ -191,87 +510,36 @@ public class GeneBankCreateBTree
     }
 /**
  * 
- * Using buffered reader to read the gbk files 
+ * Printing the time spent on every ORIGIN block for debug level 2
  * 
- * @param reader - the Buffered Reader
- * @param tree - the b tree contents that being read 
- * @param sequenceLength - length of the sequence 
- * @throws IOException
- */    
-    private static void buildTreeFromContents(BufferedReader reader, BTree tree, int sequenceLength) throws IOException {
-    	String line = reader.readLine();
-    	StringBuilder sequenceToParse = new StringBuilder();
-    	if(debugLevel == 2) {
-    		long startTime = System.currentTimeMillis();
-        	while(!line.contains("//")) {
-        		line = line.replaceAll("\\d", "").replaceAll("\\s+", "");
-        		sequenceToParse.append(line);
-        		line = reader.readLine();
-        	}
-        	addSequencesToTree(tree, sequenceLength, sequenceToParse.toString());  
-        	System.out.println("Time to insert subsequences from sequence of size " + sequenceToParse.length());
-        	System.out.println(" -> " + (System.currentTimeMillis() - startTime));
-    	} else {
-        	while(!line.contains("//")) {
-        		line = line.replaceAll("\\d", "").replaceAll("\\s+", "");
-        		sequenceToParse.append(line);
-        		line = reader.readLine();
-        	}
-        	addSequencesToTree(tree, sequenceLength, sequenceToParse.toString());    	
+ */
+    private static class RecordTimer implements BaseConsumer {
+    	private final BaseConsumer consumer;
+    	private long startTime;
+    	private long sequenceSize;
+    	
+    	/**
+    	 * Constructor of the timer
+    	 * @param consumer - consumer that does the actual work
+    	 */
+    	RecordTimer(BaseConsumer consumer) {
+    		this.consumer = consumer;
+    		startTime = System.currentTimeMillis();
     	}
-    }
-    
-	/**
-	 * 
-	 * Adding sequences to tree 
-	 * 
-	 * @param tree
-	 * @param sequenceLength
-	 * @param sequence
-	 * @throws IOException
-	 */
-    private static void addSequencesToTree(BTree tree, int sequenceLength, String sequence) throws IOException {
-    	long insertValue = 0;
-    	int i = 0;
-    	String subString;
-    	while(i <= sequence.length() - sequenceLength) {
-    		subString = sequence.substring(i,sequenceLength + i);
-    		if(!subString.contains("n")) {
-    			insertValue = sequenceToLong(subString);		
-    			tree.insert(insertValue);
-    		}
-    		i++;	
+    	
+    	@Override
+    	public void addCode(int code) throws IOException {
+    		consumer.addCode(code);
+    		sequenceSize++;
     	}
-    }
-
-	/**
-	 *
-	 * Method for converting a DNA string into a long integer  
-	 * @param sequence - the initial DNA string 
-	 * @return longRep - long integer
-	 */
-    private static long sequenceToLong(String sequence) {
-    	long longRep = 0;
-
-    	for(int i = 0; i < sequence.length(); i++) { 
-    		switch(sequence.charAt(i)) {
-    		
-    		case 'a' :
-    			longRep = (longRep << 2);
-    			break;
-    		case 'c' :
-    			longRep = (longRep << 2) + 1;
-    			break;
-    		case 'g' :
-    			longRep = (longRep << 2) + 2;
-    			break;
-    		case 't' :
-    			longRep = (longRep << 2) + 3;
-    			break;
-    		}
-    	} 
     	
-    	return longRep;
+    	@Override
+    	public void endSequence() throws IOException {
+    		consumer.endSequence();
+        	System.out.println("Time to insert subsequences from sequence of size " + sequenceSize);
+        	System.out.println(" -> " + (System.currentTimeMillis() - startTime));
+        	sequenceSize = 0;
+        	startTime = System.currentTimeMillis();
+    	}
     }
-    
 }
@@ -1,5 +1,9 @@
 package cs321.create;
 
+import java.util.Arrays;
+
+import cs321.btree.BTree;
+
 /**
  * Filename: GeneBankCreateBTreeArguments.java
  * Class core creating and parsing BTree Arguments
@@ -8,12 +12,25 @@ package cs321.create;
  */
 public class GeneBankCreateBTreeArguments
 {
+    public static final int DEFAULT_COUNT_MAP_ENTRIES = 1 << 20;
+
     private final int useCache;
     private final int degree;
     private final String gbkFileName;
     private final int subsequenceLength;
     private final int cacheSize;
     private final int debugLevel;
+    private final String cachePolicy;
+    private int writeBehindPages; // 0 when pages are written on the inserting thread
+    private int shards = 1; // trees the k-mers are split into by their leading bases
+    private int countMapEntries = DEFAULT_COUNT_MAP_ENTRIES; // distinct k-mers counted before a flush, 0 for none
+    private int threads = 1; // threads encoding the input
+    private boolean sqlPragmas; // bulk-load pragmas for the SQLite export
+    private boolean canonical; // only min(k-mer, reverse complement) is stored
+    private int[] lengths; // sequence lengths built in one pass, null for a single length
+    private String pageCodec = "fixed"; // format of the node pages
+    private int pageSize = BTree.DEFAULT_PAGE_SIZE; // bytes of every node page
+    private boolean append; // k-mers are added to the tree built before
 
     /**
      * 
@@ -27,6 +44,23 @@ public class GeneBankCreateBTreeArguments
      * @param debugLevel
      */
     public GeneBankCreateBTreeArguments(int useCache, int degree, String gbkFileName, int subsequenceLength, int cacheSize, int debugLevel)
+    {
+        this(useCache, degree, gbkFileName, subsequenceLength, cacheSize, debugLevel, "lru");
+    }
+
+    /**
+     * 
+     * Constructor of BTree Arguments with a cache replacement policy
+     * 
+     * @param useCache
+     * @param degree
+     * @param gbkFileName
+     * @param subsequenceLength
+     * @param cacheSize
+     * @param debugLevel
+     * @param cachePolicy - lru, clock, 2q or arc
+     */
+    public GeneBankCreateBTreeArguments(int useCache, int degree, String gbkFileName, int subsequenceLength, int cacheSize, int debugLevel, String cachePolicy)
     {
         this.useCache = useCache;
         this.degree = degree;
@@ -34,6 +68,7 @@ public class GeneBankCreateBTreeArguments
         this.subsequenceLength = subsequenceLength;
         this.cacheSize = cacheSize;
         this.debugLevel = debugLevel;
+        this.cachePolicy = cachePolicy;
     }
 
     /**
@@ -87,6 +122,174 @@ public class GeneBankCreateBTreeArguments
      */
     public int getDebugLevel() { return debugLevel; }
 
+    /**
+     * 
+     * get the replacement policy of the cache
+     * 
+     * @return cachePolicy
+     */
+    public String getCachePolicy() { return cachePolicy; }
+
+    /**
+     * 
+     * get the number of dirty pages the background writer may hold
+     * 
+     * @return writeBehindPages - 0 if writes are not done in the background
+     */
+    public int getWriteBehindPages() { return writeBehindPages; }
+
+    /**
+     * 
+     * set the number of dirty pages the background writer may hold
+     * 
+     * @param writeBehindPages - 0 to write on the inserting thread
+     */
+    public void setWriteBehindPages(int writeBehindPages) { this.writeBehindPages = writeBehindPages; }
+
+    /**
+     * 
+     * get the number of shards the tree is built as
+     * 
+     * @return shards - 1 for a single tree
+     */
+    public int getShards() { return shards; }
+
+    /**
+     * 
+     * set the number of shards the tree is built as
+     * 
+     * @param shards - power of 2, 1 for a single tree
+     */
+    public void setShards(int shards) { this.shards = shards; }
+
+    /**
+     * 
+     * get the number of distinct k-mers counted in memory before they are added to the tree
+     * 
+     * @return countMapEntries - 0 if every k-mer is inserted on its own
+     */
+    public int getCountMapEntries() { return countMapEntries; }
+
+    /**
+     * 
+     * set the number of distinct k-mers counted in memory before they are added to the tree
+     * 
+     * @param countMapEntries - 0 to insert every k-mer on its own
+     */
+    public void setCountMapEntries(int countMapEntries) { this.countMapEntries = countMapEntries; }
+
+    /**
+     * 
+     * get the number of threads encoding the input
+     * 
+     * @return threads - 1 if the input is encoded on the main thread
+     */
+    public int getThreads() { return threads; }
+
+    /**
+     * 
+     * set the number of threads encoding the input
+     * 
+     * @param threads - 1 to encode on the main thread
+     */
+    public void setThreads(int threads) { this.threads = threads; }
+
+    /**
+     * 
+     * get whether the SQLite export turns off the journal and syncing
+     * 
+     * @return sqlPragmas
+     */
+    public boolean useSQLPragmas() { return sqlPragmas; }
+
+    /**
+     * 
+     * set whether the SQLite export turns off the journal and syncing
+     * 
+     * @param sqlPragmas - true for journal_mode = OFF and synchronous = OFF
+     */
+    public void setSQLPragmas(boolean sqlPragmas) { this.sqlPragmas = sqlPragmas; }
+
+    /**
+     * 
+     * get whether only the smaller of a k-mer and its reverse complement is stored
+     * 
+     * @return canonical
+     */
+    public boolean isCanonical() { return canonical; }
+
+    /**
+     * 
+     * set whether only the smaller of a k-mer and its reverse complement is stored
+     * 
+     * @param canonical - true to store canonical k-mers
+     */
+    public void setCanonical(boolean canonical) { this.canonical = canonical; }
+
+    /**
+     * 
+     * get the sequence lengths that are built from one pass over the file
+     * 
+     * @return lengths - null if only the subsequence length is built
+     */
+    public int[] getLengths() { return lengths; }
+
+    /**
+     * 
+     * set the sequence lengths that are built from one pass over the file
+     * 
+     * @param lengths - one tree is built for every length, null for the subsequence length only
+     */
+    public void setLengths(int[] lengths) { this.lengths = lengths; }
+
+    /**
+     * 
+     * get the format of the node pages
+     * 
+     * @return pageCodec - fixed or varint
+     */
+    public String getPageCodec() { return pageCodec; }
+
+    /**
+     * 
+     * set the format of the node pages
+     * 
+     * @param pageCodec - fixed or varint
+     */
+    public void setPageCodec(String pageCodec) { this.pageCodec = pageCodec; }
+
+    /**
+     * 
+     * get the size of the node pages
+     * 
+     * @return pageSize - in bytes
+     */
+    public int getPageSize() { return pageSize; }
+
+    /**
+     * 
+     * set the size of the node pages
+     * 
+     * @param pageSize - power of 2 from 4096 to 65536
+     */
+    public void setPageSize(int pageSize) { this.pageSize = pageSize; }
+
+    /**
+     * 
+     * get whether the k-mers are added to the tree that was built before
+     * 
+     * @return append
+     */
+    public boolean isAppend() { return append; }
+
+    /**
+     * 
+     * set whether the k-mers are added to the tree that was built before
+     * 
+     * @param append - true to open the existing tree, false to build a new one
+     */
+    public void setAppend(boolean append) { this.append = append; }
+
     @Override
     public boolean equals(Object obj)
     {
@@ -138,6 +341,50 @@ public class GeneBankCreateBTreeArguments
         {
             return false;
         }
+        if (!cachePolicy.equals(other.cachePolicy))
+        {
+            return false;
+        }
+        if (writeBehindPages != other.writeBehindPages)
+        {
+            return false;
+        }
+        if (shards != other.shards)
+        {
+            return false;
+        }
+        if (countMapEntries != other.countMapEntries)
+        {
+            return false;
+        }
+        if (threads != other.threads)
+        {
+            return false;
+        }
+        if (sqlPragmas != other.sqlPragmas)
+        {
+            return false;
+        }
+        if (canonical != other.canonical)
+        {
+            return false;
+        }
+        if (!Arrays.equals(lengths, other.lengths))
+        {
+            return false;
+        }
+        if (!pageCodec.equals(other.pageCodec))
+        {
+            return false;
+        }
+        if (pageSize != other.pageSize)
+        {
+            return false;
+        }
+        if (append != other.append)
+        {
+            return false;
+        }
         return true;
     }
 
@@ -152,6 +399,17 @@ public class GeneBankCreateBTreeArguments
                 ", subsequenceLength=" + subsequenceLength +
                 ", cacheSize=" + cacheSize +
                 ", debugLevel=" + debugLevel +
+                ", cachePolicy='" + cachePolicy + '\'' +
+                ", writeBehindPages=" + writeBehindPages +
+                ", shards=" + shards +
+                ", countMapEntries=" + countMapEntries +
+                ", threads=" + threads +
+                ", sqlPragmas=" + sqlPragmas +
+                ", canonical=" + canonical +
+                ", lengths=" + Arrays.toString(lengths) +
+                ", pageCodec='" + pageCodec + '\'' +
+                ", pageSize=" + pageSize +
+                ", append=" + append +
                 '}';
     }
 }
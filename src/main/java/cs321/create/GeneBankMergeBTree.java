@@ -0,0 +1,110 @@
+package cs321.create;
+
+import cs321.btree.BTree;
+import cs321.btree.BTreeMerger;
+import cs321.btree.ShardedBTree;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+
+/**
+ * Filename: GeneBankMergeBTree.java
+ * Merging B Trees built by GeneBankCreateBTree, for example one per
+ * chromosome or sample, into one new tree. Frequencies of the same k-mer
+ * are added up and the new tree is written in one pass by the bulk
+ * loader. A shard manifest can be given in place of a tree, its shards
+ * are merged like separate trees.
+ *
+ * The trees are opened from their headers, so they must have been
+ * written with one.
+ *
+ * @author Harry Nguyen
+ */
+public class GeneBankMergeBTree
+{
+    /**
+     * Main driver of the merge
+     * @param args - arguments about to be parsed in
+     */
+    public static void main(String[] args)
+    {
+        GeneBankMergeBTreeArguments gM = new GeneBankMergeBTreeArguments(args);
+        File outputFile = new File(gM.outputFile());
+        if (outputFile.exists()) {
+            GeneBankMergeBTreeArguments.printUsageAndExit("The output file " + outputFile + " already exists!");
+        }
+        ArrayList<BTree> inputs = new ArrayList<BTree>();
+        BTree output = null;
+        boolean merged = false;
+        String usageError = null; // printed with the usage once the trees are closed
+        int exitStatus = 0;
+        try {
+            for (String name : gM.bTreeFiles()) {
+                File file = new File(name);
+                if (!file.exists()) {
+                    throw new IllegalArgumentException("The BTree file " + name + " does not exist!");
+                }
+                if (name.endsWith(ShardedBTree.MANIFEST_SUFFIX)) {
+                    ShardedBTree sharded = new ShardedBTree(file, false, 0, "lru");
+                    for (int i = 0; i < sharded.getShardCount(); i++) {
+                        inputs.add(sharded.getShard(i));
+                    }
+                } else {
+                    BTree tree = new BTree(0, 0, file);
+                    inputs.add(tree);
+                    if (tree.getSequenceLength() == 0) {
+                        throw new IllegalArgumentException("The BTree file " + name + " has no header, it has to be rebuilt!");
+                    }
+                }
+            }
+
+            long startTime = System.currentTimeMillis();
+            BTreeMerger merger = new BTreeMerger(inputs.toArray(new BTree[0]));
+            output = new BTree(gM.getDegree(), inputs.get(0).getSequenceLength(), outputFile, false, 0, "lru", gM.getPageCodec(), gM.getPageSize());
+            long keys = merger.mergeInto(output);
+            output.closeTree();
+            if (gM.debugLevel() > 0) {
+                output.dump("dump");
+                System.out.println("Merged " + inputs.size() + " trees into " + outputFile + ": " + keys + " keys in "
+                    + (System.currentTimeMillis() - startTime) + " ms");
+            }
+            merged = true;
+        } catch (IllegalArgumentException e) {
+            usageError = e.getMessage();
+        } catch (IOException e) {
+            System.err.println("There was an error merging the BTrees: " + e);
+            exitStatus = 1;
+        } finally {
+            close(output);
+            for (BTree input : inputs) { // the shards of a manifest are closed one by one
+                close(input);
+            }
+            if (!merged) {
+                outputFile.delete(); // a partial output would make the next run fail with "already exists"
+            }
+        }
+        if (usageError != null) {
+            GeneBankMergeBTreeArguments.printUsageAndExit(usageError);
+        }
+        if (exitStatus != 0) {
+            System.exit(exitStatus);
+        }
+    }
+
+    /**
+     * Closing a tree and reporting, not throwing, a failure, so every tree gets closed
+     * @param tree - tree to close, may be null
+     */
+    private static void close(BTree tree)
+    {
+        if (tree == null) {
+            return;
+        }
+        try {
+            tree.close();
+        } catch (IOException e) {
+            System.err.println("There was an error closing a BTree: " + e);
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package cs321.create;
+
+import cs321.btree.BTree;
+import cs321.btree.PageCodec;
+
+/**
+ * Filename: GeneBankMergeBTreeArguments.java
+ * Parsing the arguments of GeneBankMergeBTree
+ *
+ * @author Harry Nguyen
+ */
+public class GeneBankMergeBTreeArguments
+{
+    private String[] bTreeFiles; // trees or shard manifests that are merged
+    private String outputFile;
+    private int degree; // degree of the merged tree, 0 for the largest degree a page holds
+    private int pageSize = BTree.DEFAULT_PAGE_SIZE;
+    private String pageCodec = "fixed";
+    private int debugLevel;
+
+    /**
+     * Create an instance of the class, in order to parse the arguments.
+     *
+     * @param args - argument array that are being parsed in
+     */
+    public GeneBankMergeBTreeArguments(String[] args)
+    {
+        try {
+            if (args.length < 2 || args.length > 6) {
+                printUsageAndExit("Invalid number of arguments!");
+            }
+            for (int i = 0; i < args.length; i++) {
+                if (args[i].contains("--btreefiles=")) {
+                    bTreeFiles = args[i].substring(13).split(",");
+                } else if (args[i].contains("--output=")) {
+                    outputFile = args[i].substring(9);
+                } else if (args[i].contains("--degree=")) {
+                    degree = Integer.parseInt(args[i].substring(9));
+                    if (degree < 0 || degree == 1) {
+                        printUsageAndExit("Invalid degree!");
+                    }
+                } else if (args[i].contains("--pagesize=")) {
+                    pageSize = Integer.parseInt(args[i].substring(11));
+                    if (pageSize < BTree.MIN_PAGE_SIZE || pageSize > BTree.MAX_PAGE_SIZE || Integer.bitCount(pageSize) != 1) {
+                        printUsageAndExit("Invalid page size, it must be a power of 2 from 4096 to 65536!");
+                    }
+                } else if (args[i].contains("--pagecodec=")) {
+                    pageCodec = args[i].substring(12);
+                    if (!PageCodec.isValidName(pageCodec)) {
+                        printUsageAndExit("Invalid page codec!");
+                    }
+                } else if (args[i].contains("--debug=")) {
+                    debugLevel = Integer.parseInt(args[i].substring(8));
+                    if (debugLevel < 0 || debugLevel > 1) {
+                        printUsageAndExit("Invalid debug level!");
+                    }
+                }
+            }
+        } catch (Exception e) {
+            printUsageAndExit("Incorrect argument format");
+        }
+        if (bTreeFiles == null || outputFile == null) {
+            printUsageAndExit("The BTree files and the output file are required!");
+        }
+    }
+
+    /**
+     * Getter method for the trees that are merged
+     * @return - paths of the BTree files or shard manifests
+     */
+    public String[] bTreeFiles() {
+        return bTreeFiles;
+    }
+
+    /**
+     * Getter method for the merged tree
+     * @return - path of the new BTree file
+     */
+    public String outputFile() {
+        return outputFile;
+    }
+
+    /**
+     * Getter method for the degree of the merged tree
+     * @return - degree, 0 for the largest degree a page holds
+     */
+    public int getDegree() {
+        return degree;
+    }
+
+    /**
+     * Getter method for the page size of the merged tree
+     * @return - page size in bytes
+     */
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    /**
+     * Getter method for the page format of the merged tree
+     * @return - fixed or varint
+     */
+    public String getPageCodec() {
+        return pageCodec;
+    }
+
+    /**
+     * Getter method for debug level
+     * @return - Returns debug level
+     */
+    public int debugLevel() {
+        return debugLevel;
+    }
+
+    /**
+     *
+     * Printing out the usage of the GeneBankMergeBTree and the error message
+     * @param errorMessage
+     */
+    public static void printUsageAndExit(String errorMessage)
+    {
+        System.out.println("java -jar build/libs/GeneBankMergeBTree.jar --btreefiles=<BTree file>,<BTree file>,... --output=<BTree file>"
+        + " [--degree=<btree degree>] [--pagesize=<4096..65536>] [--pagecodec=fixed|varint] [--debug=0|1]");
+        System.err.println(errorMessage);
+        System.exit(1);
+    }
+}
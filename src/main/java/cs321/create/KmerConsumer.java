@@ -0,0 +1,19 @@
+package cs321.create;
+
+import java.io.IOException;
+
+/**
+ * Filename: KmerConsumer.java
+ * Callback receiving the 2-bit encoded k-mers of a sequence, one long at a time
+ *
+ * @author Harry Nguyen
+ */
+public interface KmerConsumer
+{
+    /**
+     * Method called for every complete k-mer window
+     * @param kmer - 2-bit encoded k-mer, first base in the highest bits
+     * @throws IOException - Throws IO exception if there are issues
+     */
+    public void accept(long kmer) throws IOException;
+}
@@ -0,0 +1,20 @@
+package cs321.create;
+
+import java.io.IOException;
+
+/**
+ * Filename: KmerCountConsumer.java
+ * Callback receiving a k-mer together with the number of times it was seen
+ *
+ * @author Harry Nguyen
+ */
+public interface KmerCountConsumer
+{
+    /**
+     * Method called for every counted k-mer
+     * @param kmer - 2-bit encoded k-mer, first base in the highest bits
+     * @param count - number of occurrences to add for the k-mer
+     * @throws IOException - Throws IO exception if there are issues
+     */
+    public void accept(long kmer, int count) throws IOException;
+}
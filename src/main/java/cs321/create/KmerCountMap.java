@@ -0,0 +1,228 @@
+package cs321.create;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Filename: KmerCountMap.java
+ * Counts k-mers before they reach the tree. The counts are kept in an
+ * open-addressing hash map of primitive arrays (linear probing, load at
+ * most 3/4) that holds a fixed number of distinct k-mers. When it is full
+ * it is flushed: the k-mers are copied out with their counts, sorted
+ * together and handed to a KmerCountConsumer, so the tree sees one upsert per distinct k-mer per
+ * flush instead of one insert per occurrence.
+ *
+ * @author Harry Nguyen
+ */
+public class KmerCountMap implements KmerConsumer
+{
+    private static final long EMPTY = -1L; // never a k-mer, those use at most 62 bits
+    private static final long HASH_MULTIPLIER = 0x9E3779B97F4A7C15L;
+    private static final int INSERTION_SORT_SIZE = 16; // ranges this small are sorted by insertion
+
+    private final KmerCountConsumer consumer;
+    private final long[] keys;
+    private final int[] counts;
+    private final long[] sorted;
+    private final int[] sortedCounts;
+    private final int maxEntries;
+    private final int shift;
+    private final int mask;
+    private int size;
+    private long flushes;
+
+    /**
+     * Constructor of the map
+     * @param maxEntries - distinct k-mers held before the map is flushed
+     * @param consumer - receives every k-mer with its count on a flush
+     */
+    public KmerCountMap(int maxEntries, KmerCountConsumer consumer)
+    {
+        if (maxEntries < 1 || maxEntries > (1 << 29)) {
+            throw new IllegalArgumentException("Invalid number of count map entries: " + maxEntries);
+        }
+        int capacity = Integer.highestOneBit(maxEntries + maxEntries / 3) << 1; // keeps the load at 3/4 or less
+        this.consumer = consumer;
+        this.maxEntries = maxEntries;
+        keys = new long[capacity];
+        counts = new int[capacity];
+        sorted = new long[maxEntries];
+        sortedCounts = new int[maxEntries];
+        shift = 64 - Integer.numberOfTrailingZeros(capacity);
+        mask = capacity - 1;
+        Arrays.fill(keys, EMPTY);
+    }
+
+    /**
+     * Counting one occurrence of a k-mer
+     * @param kmer - encoded k-mer
+     * @throws IOException - Throws IO exception if the flush has issues
+     */
+    @Override
+    public void accept(long kmer) throws IOException
+    {
+        add(kmer, 1);
+    }
+
+    /**
+     * Adding occurrences of a k-mer, flushing the map when a new k-mer fills it
+     * @param kmer - encoded k-mer
+     * @param delta - occurrences to add
+     * @throws IOException - Throws IO exception if the flush has issues
+     */
+    public void add(long kmer, int delta) throws IOException
+    {
+        int slot = slot(kmer);
+        while (keys[slot] != EMPTY) {
+            if (keys[slot] == kmer) {
+                if (counts[slot] > Integer.MAX_VALUE - delta) { // hand over the count before it overflows
+                    consumer.accept(kmer, counts[slot]);
+                    counts[slot] = 0;
+                }
+                counts[slot] += delta;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = kmer;
+        counts[slot] = delta;
+        size++;
+        if (size == maxEntries) {
+            flush();
+        }
+    }
+
+    /**
+     * Getter method for the count of a k-mer that has not been flushed
+     * @param kmer - encoded k-mer
+     * @return count - 0 if the k-mer is not in the map
+     */
+    public int get(long kmer)
+    {
+        int slot = slot(kmer);
+        while (keys[slot] != EMPTY) {
+            if (keys[slot] == kmer) {
+                return counts[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return 0;
+    }
+
+    /**
+     * Handing every k-mer in ascending order with its count to the consumer
+     * and emptying the map
+     * @throws IOException - Throws IO exception if the consumer has issues
+     */
+    public void flush() throws IOException
+    {
+        if (size == 0) {
+            return;
+        }
+        int n = 0;
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != EMPTY) {
+                sorted[n] = keys[i];
+                sortedCounts[n++] = counts[i];
+            }
+        }
+        sort(0, n);
+        for (int i = 0; i < n; i++) {
+            consumer.accept(sorted[i], sortedCounts[i]);
+        }
+        Arrays.fill(keys, EMPTY);
+        size = 0;
+        flushes++;
+    }
+
+    /**
+     * Getter method for the number of distinct k-mers in the map
+     * @return size
+     */
+    public int getSize()
+    {
+        return size;
+    }
+
+    /**
+     * Getter method for the number of flushes so far
+     * @return flushes
+     */
+    public long getFlushes()
+    {
+        return flushes;
+    }
+
+    /**
+     * Sorting the k-mers copied out by a flush together with their counts,
+     * a quicksort that moves both arrays and recurses on the smaller side
+     * @param from - index of the first k-mer
+     * @param to - index after the last k-mer
+     */
+    private void sort(int from, int to)
+    {
+        while (to - from > INSERTION_SORT_SIZE) {
+            long a = sorted[from];
+            long b = sorted[(from + to) >>> 1];
+            long c = sorted[to - 1];
+            long pivot = Math.max(Math.min(a, b), Math.min(Math.max(a, b), c)); // median of three
+            int i = from;
+            int j = to - 1;
+            while (i <= j) {
+                while (sorted[i] < pivot) {
+                    i++;
+                }
+                while (sorted[j] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    swap(i++, j--);
+                }
+            }
+            if (j + 1 - from < to - i) {
+                sort(from, j + 1);
+                from = i;
+            } else {
+                sort(i, to);
+                to = j + 1;
+            }
+        }
+        for (int i = from + 1; i < to; i++) {
+            long kmer = sorted[i];
+            int count = sortedCounts[i];
+            int j = i - 1;
+            while (j >= from && sorted[j] > kmer) {
+                sorted[j + 1] = sorted[j];
+                sortedCounts[j + 1] = sortedCounts[j];
+                j--;
+            }
+            sorted[j + 1] = kmer;
+            sortedCounts[j + 1] = count;
+        }
+    }
+
+    /**
+     * Swapping two k-mers of a flush with their counts
+     * @param i - index of one k-mer
+     * @param j - index of the other k-mer
+     */
+    private void swap(int i, int j)
+    {
+        long kmer = sorted[i];
+        sorted[i] = sorted[j];
+        sorted[j] = kmer;
+        int count = sortedCounts[i];
+        sortedCounts[i] = sortedCounts[j];
+        sortedCounts[j] = count;
+    }
+
+    /**
+     * Finding the home slot of a k-mer with Fibonacci hashing
+     * @param kmer - encoded k-mer
+     * @return slot index
+     */
+    private int slot(long kmer)
+    {
+        return (int) ((kmer * HASH_MULTIPLIER) >>> shift);
+    }
+}
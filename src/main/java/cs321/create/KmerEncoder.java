@@ -0,0 +1,156 @@
+package cs321.create;
+
+import java.io.IOException;
+
+/**
+ * Filename: KmerEncoder.java
+ * Rolling 2-bit encoder for k-mers. Each base is shifted into a long that
+ * is masked to 2k bits, so every window costs O(1) work and no objects.
+ * Ambiguous bases (n and any other non acgt character) restart the window.
+ * In canonical mode the reverse complement of the window is rolled along
+ * with it, the complement of each base entering at the high end, and the
+ * smaller of the two is handed on so both strands map to one key.
+ *
+ * @author Harry Nguyen
+ */
+public class KmerEncoder implements BaseConsumer
+{
+    private static final byte[] BASE_CODES = new byte[256];
+
+    static {
+        for (int i = 0; i < BASE_CODES.length; i++) {
+            BASE_CODES[i] = -1;
+        }
+        BASE_CODES['a'] = BASE_CODES['A'] = 0;
+        BASE_CODES['c'] = BASE_CODES['C'] = 1;
+        BASE_CODES['g'] = BASE_CODES['G'] = 2;
+        BASE_CODES['t'] = BASE_CODES['T'] = 3;
+    }
+
+    private final int sequenceLength;
+    private final long mask;
+    private final KmerConsumer consumer;
+    private final boolean canonical;
+    private final int complementShift;
+    private long kmer;
+    private long reverseComplement;
+    private int validBases;
+
+    /**
+     * Constructor of the encoder
+     * @param sequenceLength - length k of the k-mers, between 1 and 31
+     * @param consumer - callback receiving every complete k-mer
+     */
+    public KmerEncoder(int sequenceLength, KmerConsumer consumer)
+    {
+        this(sequenceLength, false, consumer);
+    }
+
+    /**
+     * Constructor of the encoder with a choice of canonical k-mers
+     * @param sequenceLength - length k of the k-mers, between 1 and 31
+     * @param canonical - true to hand on min(k-mer, reverse complement) instead of the k-mer
+     * @param consumer - callback receiving every complete k-mer
+     */
+    public KmerEncoder(int sequenceLength, boolean canonical, KmerConsumer consumer)
+    {
+        this.sequenceLength = sequenceLength;
+        this.mask = (1L << (2 * sequenceLength)) - 1;
+        this.consumer = consumer;
+        this.canonical = canonical;
+        this.complementShift = 2 * (sequenceLength - 1);
+    }
+
+    /**
+     * Method for looking up the 2-bit code of a base character
+     * @param base - character or byte of the base
+     * @return 0 to 3 for a, c, g, t in either case, -1 otherwise
+     */
+    public static int baseCode(int base)
+    {
+        return BASE_CODES[base & 0xff];
+    }
+
+    /**
+     * Method for adding the next base character of the sequence
+     * @param base - character or byte of the base
+     * @throws IOException - Throws IO exception if the consumer has issues
+     */
+    public void addBase(int base) throws IOException
+    {
+        addCode(BASE_CODES[base & 0xff]);
+    }
+
+    /**
+     * Method for adding the next base as a 2-bit code
+     * @param code - 0 to 3 for a, c, g, t, negative for an ambiguous base
+     * @throws IOException - Throws IO exception if the consumer has issues
+     */
+    @Override
+    public void addCode(int code) throws IOException
+    {
+        if (code < 0) {
+            reset();
+            return;
+        }
+        kmer = ((kmer << 2) | code) & mask;
+        if (canonical) {
+            reverseComplement = (reverseComplement >>> 2) | ((long) (3 - code) << complementShift);
+        }
+        if (validBases < sequenceLength) {
+            validBases++;
+        }
+        if (validBases == sequenceLength) {
+            consumer.accept(canonical ? Math.min(kmer, reverseComplement) : kmer);
+        }
+    }
+
+    /**
+     * Method for encoding every base of a sequence
+     * @param sequence - DNA sequence to encode
+     * @throws IOException - Throws IO exception if the consumer has issues
+     */
+    public void encode(CharSequence sequence) throws IOException
+    {
+        for (int i = 0; i < sequence.length(); i++) {
+            addBase(sequence.charAt(i));
+        }
+    }
+
+    /**
+     * Method for ending a record, the next k-mer starts with the next base
+     */
+    @Override
+    public void endSequence()
+    {
+        reset();
+    }
+
+    /**
+     * Method for starting a new window, used between records and after ambiguous bases
+     */
+    public void reset()
+    {
+        kmer = 0;
+        reverseComplement = 0;
+        validBases = 0;
+    }
+
+    /**
+     * Getter method for the k-mer length
+     * @return - length of the k-mers
+     */
+    public int getSequenceLength()
+    {
+        return sequenceLength;
+    }
+
+    /**
+     * Getter method for the canonical mode
+     * @return - true if the smaller of a k-mer and its reverse complement is handed on
+     */
+    public boolean isCanonical()
+    {
+        return canonical;
+    }
+}
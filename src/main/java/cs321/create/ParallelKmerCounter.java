@@ -0,0 +1,197 @@
+package cs321.create;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Filename: ParallelKmerCounter.java
+ * Counts the k-mers of a GenBank file on a fork-join pool. The file is cut
+ * into ranges of CHUNK_BYTES and every range is scanned for its sequence
+ * lines by a task of its own, for every state the parser can be in at its
+ * start. The calling thread only chains the scans in file order to pick
+ * the right one and hands the sequence lines of the range to another task
+ * that encodes them; a range reads k - 1 bases past its end so the k-mers
+ * crossing into the next range are counted by the range they start in.
+ * Every task counts its k-mers in the
+ * KmerCountMap of its worker thread, which is flushed at the end of the
+ * task and used again by the next one, and the counts of the tasks are handed to the consumer on
+ * the calling thread, in file order, so the consumer does not have to be
+ * thread-safe. At most two scans and two counts per thread are in flight.
+ *
+ * @author Harry Nguyen
+ */
+public class ParallelKmerCounter
+{
+    private static final int CHUNK_BYTES = 1 << 18;
+    private static final int LOCAL_MAP_ENTRIES = 1 << 15;
+
+    private final File file;
+    private final GenBankParser parser;
+    private final int sequenceLength;
+    private final int threads;
+    private final boolean canonical;
+    private int records;
+    private final ThreadLocal<WorkerCounts> workerCounts = ThreadLocal.withInitial(WorkerCounts::new);
+
+    /**
+     * Constructor of the counter
+     * @param file - GenBank file to scan
+     * @param sequenceLength - length k of the k-mers
+     * @param threads - number of worker threads
+     */
+    public ParallelKmerCounter(File file, int sequenceLength, int threads)
+    {
+        this(file, sequenceLength, false, threads);
+    }
+
+    /**
+     * Constructor of the counter with a choice of canonical k-mers
+     * @param file - GenBank file to scan
+     * @param sequenceLength - length k of the k-mers
+     * @param canonical - true to count min(k-mer, reverse complement) instead of the k-mer
+     * @param threads - number of worker threads
+     */
+    public ParallelKmerCounter(File file, int sequenceLength, boolean canonical, int threads)
+    {
+        this.file = file;
+        this.parser = new GenBankParser(file);
+        this.sequenceLength = sequenceLength;
+        this.canonical = canonical;
+        this.threads = threads;
+    }
+
+    /**
+     * Method for counting every k-mer of the file
+     * @param consumer - receives the counts of every piece, a k-mer can be
+     * handed over several times and its counts add up
+     * @throws IOException - Throws IO exception if the file can not be read
+     */
+    public void count(KmerCountConsumer consumer) throws IOException
+    {
+        long size = file.length();
+        records = 0;
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        ArrayDeque<ForkJoinTask<GenBankParser.RangeScan>> scans = new ArrayDeque<ForkJoinTask<GenBankParser.RangeScan>>();
+        ArrayDeque<ForkJoinTask<ChunkCounts>> inFlight = new ArrayDeque<ForkJoinTask<ChunkCounts>>();
+        int state = GenBankParser.RangeScan.FILE_START;
+        try {
+            long next = 0;
+            while (next < size || !scans.isEmpty()) {
+                while (next < size && scans.size() < 2 * threads) {
+                    final long from = next;
+                    final long to = Math.min(next + CHUNK_BYTES, size);
+                    scans.add(pool.submit(() -> parser.scanRange(from, to)));
+                    next = to;
+                }
+                GenBankParser.RangeScan scan = scans.poll().get();
+                final long[] sequences = scan.getSequences(state);
+                records += scan.getBlockStarts(state);
+                state = scan.getEndState(state);
+                if (sequences.length > 0) {
+                    inFlight.add(pool.submit(() -> countSequences(sequences, size)));
+                    if (inFlight.size() >= 2 * threads) {
+                        inFlight.poll().get().handTo(consumer);
+                    }
+                }
+            }
+            while (!inFlight.isEmpty()) {
+                inFlight.poll().get().handTo(consumer);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while counting k-mers", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Getter method for the number of ORIGIN blocks found by the last count
+     * @return - number of records
+     */
+    public int getRecords()
+    {
+        return records;
+    }
+
+    /**
+     * Task counting the k-mers that start in the sequence lines of one range
+     * @param sequences - start and end offset of every piece of sequence lines in the range
+     * @param size - size of the file
+     * @return counts - k-mers of the range with their counts
+     * @throws IOException - Throws IO exception if the file can not be read
+     */
+    private ChunkCounts countSequences(long[] sequences, long size) throws IOException
+    {
+        WorkerCounts worker = workerCounts.get();
+        ChunkCounts counts = new ChunkCounts();
+        worker.target = counts;
+        for (int i = 0; i < sequences.length; i += 2) {
+            parser.parseRange(sequences[i], sequences[i + 1], size, sequenceLength - 1, worker.encoder);
+            worker.encoder.endSequence();
+        }
+        worker.map.flush();
+        worker.target = null;
+        return counts;
+    }
+
+    /**
+     * Count map and encoder of one worker thread, the map hands its counts
+     * to the task that is running on the thread
+     */
+    private class WorkerCounts implements KmerCountConsumer
+    {
+        private final KmerCountMap map = new KmerCountMap(LOCAL_MAP_ENTRIES, this);
+        private final KmerEncoder encoder = new KmerEncoder(sequenceLength, canonical, map);
+        private ChunkCounts target;
+
+        @Override
+        public void accept(long kmer, int count)
+        {
+            target.accept(kmer, count);
+        }
+    }
+
+    /**
+     * Counts produced by one task, kept in growing primitive arrays
+     */
+    private static class ChunkCounts implements KmerCountConsumer
+    {
+        private long[] kmers = new long[1024];
+        private int[] counts = new int[1024];
+        private int size;
+
+        @Override
+        public void accept(long kmer, int count)
+        {
+            if (size == kmers.length) {
+                kmers = Arrays.copyOf(kmers, size * 2);
+                counts = Arrays.copyOf(counts, size * 2);
+            }
+            kmers[size] = kmer;
+            counts[size++] = count;
+        }
+
+        /**
+         * Handing every count to the consumer
+         * @param consumer - receives the counts
+         * @throws IOException - Throws IO exception if the consumer has issues
+         */
+        void handTo(KmerCountConsumer consumer) throws IOException
+        {
+            for (int i = 0; i < size; i++) {
+                consumer.accept(kmers[i], counts[i]);
+            }
+        }
+    }
+}
@@ -1,47 +1,50 @@
 package cs321.create;
 
+import java.util.Arrays;
+
+import cs321.common.KmerDecoder;
 
 
 /**
  * SequenceUtils.java
  * Utility methods dealing with DNA sequences and its compact representation as long variables.
+ * Every base is 2 bits (a = 00, c = 01, g = 10, t = 11) with the first base in the high bits,
+ * so the complement of a base is its code XOR 11 and every method works on all bases at once.
  * @author Joshua Corrales
  */
 public class SequenceUtils
 {
 
-	private static final int MAX_SEQUENCE_LENGTH = 31;
+	private static final long LOW_BITS = 0x5555555555555555L; // low bit of every 2-bit base
+	private static final byte[] BASE_CODES = new byte[256]; // a, c, g, t in either case, -1 for anything else
+
+	static {
+		Arrays.fill(BASE_CODES, (byte) -1);
+		BASE_CODES['a'] = BASE_CODES['A'] = 0;
+		BASE_CODES['c'] = BASE_CODES['C'] = 1;
+		BASE_CODES['g'] = BASE_CODES['G'] = 2;
+		BASE_CODES['t'] = BASE_CODES['T'] = 3;
+	}
+
 	/**
 	 * Method for converting a DNA string into a long integer
-	 * @param DNAString - DNA sequence to process (a, t, c and g)
+	 * @param DNAString - DNA sequence to process (a, t, c and g in either case), at most 31 bases
 	 * @return Long integer representation of DNA String
+	 * @throws IllegalArgumentException - if the string holds anything but a, c, g and t,
+	 * such as the ambiguous base n
 	 */
 	public static long DNAStringToLong(String DNAString)  {
-
-		String binDNA = "";
-		char[] DNAcharArray = DNAString.toLowerCase().toCharArray();
-
-		//right-justify the binary string
+		long sequence = 0;
 		for (int i = 0; i < DNAString.length(); i++)
 		{
-			switch (DNAcharArray[i])
-			{
-				case 'a':
-				binDNA = binDNA.concat("00");
-				break;
-				case 't':
-				binDNA = binDNA.concat("11");
-				break;
-				case 'c':
-				binDNA = binDNA.concat("01");
-				break;
-				case 'g':
-				binDNA = binDNA.concat("10");
-				break; 
+			char base = DNAString.charAt(i);
+			int code = base < BASE_CODES.length ? BASE_CODES[base] : -1;
+			if (code < 0) {
+				throw new IllegalArgumentException("'" + base + "' in " + DNAString + " is not a, c, g or t");
 			}
+			sequence = (sequence << 2) | code;
 		}
-
-		return Long.parseLong(binDNA, 2);
+		return sequence;
 	}
 
 	/**
@@ -51,109 +54,75 @@ public class SequenceUtils
 	 * @return DNA sequence string representation of long integer
 	 */
 	public static String longToDNAString(long sequence, int seqLength) {
-		String DNAseq;
-		String[] binArray = new String[MAX_SEQUENCE_LENGTH];
-
-		DNAseq = Long.toBinaryString(sequence);
-
-		//Right-just if there is a leading c in sequence
-		if (DNAseq.length() % 2 != 0)
-			DNAseq = "0".concat(DNAseq);
-		//Right-just if there are leading a's in sequence
-		while (DNAseq.length() < seqLength * 2)
-			DNAseq = "00".concat(DNAseq);
-
-		//Right-just binary string
-		for (int i = 0; i < MAX_SEQUENCE_LENGTH; i++)
-		{
-			binArray[i] = "00";
-		}
-
-		//split string into array of 2-bit binary strings
-		for (int i = 0; 2 * i < DNAseq.length(); i++)
-		{
-			binArray[MAX_SEQUENCE_LENGTH - seqLength + i] = DNAseq.substring(i * 2, (i * 2) + 2);
-		}
-
-		DNAseq = ""; //Clear DNAseq so we can save final return value after processing
-
-		for (int i = MAX_SEQUENCE_LENGTH - seqLength; i < MAX_SEQUENCE_LENGTH; i++)
-		{
-				switch(binArray[i]) {
-					case "00": 
-						DNAseq = DNAseq.concat("a");
-						break;
-					case "11": 
-						DNAseq = DNAseq.concat("t");
-						break;
-					case "01": 
-						DNAseq = DNAseq.concat("c");
-						break;
-					case "10": 
-						DNAseq = DNAseq.concat("g");
-						break;
-					default: 
-						DNAseq = DNAseq; 
-				}
-		}
+		return KmerDecoder.toDNAString(sequence, seqLength);
+	}
 
-		return DNAseq;
+	/**
+	 * Method for getting the complement of every base, in the same order
+	 * @param sequence - Long integer representation of the sequence
+	 * @param seqLength - Length of the sequence
+	 * @return Long integer representation of the complement
+	 */
+	public static long complement(long sequence, int seqLength) {
+		return sequence ^ mask(seqLength);
 	}
 
 	/**
-	 * Method for getting the complement of DNA sequence
+	 * Method for getting the complement of DNA sequence, the sequence of the
+	 * other strand read in its own direction (the reverse complement)
 	 * @param sequence - Long integer to convert into sequence
 	 * @param seqLength - Length of the sequence to parse
 	 * @return Complement of string representation long integer
 	 */
 	public static long getComplement(long sequence, int seqLength) {
-		String DNAseqComplement;
-		String[] binArray = new String[MAX_SEQUENCE_LENGTH];
-
-		DNAseqComplement = Long.toBinaryString(sequence);
-
-		if (DNAseqComplement.length() % 2 != 0)
-			DNAseqComplement = "0".concat(DNAseqComplement);
-		while (DNAseqComplement.length() < seqLength * 2)
-			DNAseqComplement = "00".concat(DNAseqComplement);
-
-		for (int i = 0; i < MAX_SEQUENCE_LENGTH; i++)
-		{
-			binArray[i] = "00";
-		}
+		return reverseComplement(sequence, seqLength);
+	}
 
-		//split string into array of 2-bit binary strings
-		for (int i = 0; 2 * i < DNAseqComplement.length(); i++)
-		{
-			binArray[MAX_SEQUENCE_LENGTH - seqLength + i] = DNAseqComplement.substring(i * 2, (i * 2) + 2);
-		}
+	/**
+	 * Method for getting the reverse complement of a DNA sequence, the
+	 * sequence of the other strand read in its own direction. Long.reverse
+	 * reverses the bits, which reverses the bases but also the 2 bits of
+	 * every base, so the bits of every base are swapped back.
+	 * @param sequence - Long integer representation of the sequence
+	 * @param seqLength - Length of the sequence
+	 * @return Long integer representation of the reverse complement
+	 */
+	public static long reverseComplement(long sequence, int seqLength) {
+		long reverse = Long.reverse(~sequence);
+		reverse = ((reverse >>> 1) & LOW_BITS) | ((reverse & LOW_BITS) << 1);
+		return reverse >>> (64 - 2 * seqLength);
+	}
 
-		DNAseqComplement = "";
+	/**
+	 * Method for getting the canonical form of a DNA sequence, the key both
+	 * strands are stored under in a canonical tree
+	 * @param sequence - Long integer representation of the sequence
+	 * @param seqLength - Length of the sequence
+	 * @return smaller of the sequence and its reverse complement
+	 */
+	public static long canonical(long sequence, int seqLength) {
+		return Math.min(sequence, reverseComplement(sequence, seqLength));
+	}
 
-		//Similar process to longToDNAString however t and a are swapped as are c and g
-		for (int i = MAX_SEQUENCE_LENGTH - seqLength; i < MAX_SEQUENCE_LENGTH; i++)
-		{
-			switch (binArray[i])
-			{
-				case "00" :
-					DNAseqComplement = DNAseqComplement.concat("11"); //T, A's complement in Binary
-					break;
-				case "11" :
-					DNAseqComplement = DNAseqComplement.concat("00"); // A, T's complement in Binary
-					break;
-				case "01" :
-					DNAseqComplement = DNAseqComplement.concat("10"); // G, C's complement in Binary
-					break;
-				case "10" :
-					DNAseqComplement = DNAseqComplement.concat("01"); //C, G's complement in Binary
-					break;
-				default :
-					DNAseqComplement = DNAseqComplement;
-			}
-		}
+	/**
+	 * Method for checking whether a DNA sequence is its own reverse complement,
+	 * such as acgt. Both strands of such a sequence are the same k-mer, so it
+	 * is counted once when both strands are searched. Only even lengths can be.
+	 * @param sequence - Long integer representation of the sequence
+	 * @param seqLength - Length of the sequence
+	 * @return true if the sequence equals its reverse complement
+	 */
+	public static boolean isPalindrome(long sequence, int seqLength) {
+		return reverseComplement(sequence, seqLength) == sequence;
+	}
 
-		//return long int of complement of DNA string.
-		return Long.parseLong(DNAseqComplement);
+	/**
+	 * Method for getting the bits used by a sequence
+	 * @param seqLength - Length of the sequence
+	 * @return mask with the low 2 * seqLength bits set
+	 */
+	private static long mask(int seqLength) {
+		return -1L >>> (64 - 2 * seqLength);
 	}
 
 }
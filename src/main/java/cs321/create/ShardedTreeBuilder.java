@@ -0,0 +1,185 @@
+package cs321.create;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import cs321.btree.BTree;
+import cs321.btree.ShardedBTree;
+
+/**
+ * Filename: ShardedTreeBuilder.java
+ * Builds the shards of a ShardedBTree on one thread per shard. The k-mers
+ * from the parser are routed to their shard and handed over in batches
+ * through a bounded queue per shard, so the parsing thread only copies
+ * keys and every shard thread inserts into its own tree. A full queue
+ * makes the parser wait for the shard. Every shard thread can count its
+ * k-mers in its own KmerCountMap before they reach the tree.
+ *
+ * @author Harry Nguyen
+ */
+public class ShardedTreeBuilder implements KmerConsumer, KmerCountConsumer
+{
+    private static final int BATCH_SIZE = 4096;
+    private static final int QUEUED_BATCHES = 8;
+    private static final Batch END = new Batch();
+
+    private final ShardedBTree tree;
+    private final Batch[] batches;
+    private final List<BlockingQueue<Batch>> queues;
+    private final Thread[] workers;
+    private final int countMapEntries;
+    private volatile IOException failure;
+
+    /**
+     * Constructor of the builder, starts one thread per shard
+     * @param tree - the shards being filled
+     * @param countMapEntries - distinct k-mers counted in memory by all shard threads together, 0 for none
+     */
+    public ShardedTreeBuilder(ShardedBTree tree, int countMapEntries)
+    {
+        this.tree = tree;
+        this.countMapEntries = countMapEntries;
+        int shardCount = tree.getShardCount();
+        batches = new Batch[shardCount];
+        queues = new ArrayList<BlockingQueue<Batch>>(shardCount);
+        workers = new Thread[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            final BlockingQueue<Batch> queue = new ArrayBlockingQueue<Batch>(QUEUED_BATCHES);
+            final BTree shard = tree.getShard(i);
+            batches[i] = new Batch();
+            queues.add(queue);
+            workers[i] = new Thread(() -> insertBatches(shard, queue), "shard-" + i);
+            workers[i].setDaemon(true); // a failed parse must not keep the program alive
+            workers[i].start();
+        }
+    }
+
+    /**
+     * Routing a k-mer to the batch of its shard
+     * @param kmer - encoded k-mer
+     * @throws IOException - Throws IO exception if a shard thread failed
+     */
+    @Override
+    public void accept(long kmer) throws IOException
+    {
+        accept(kmer, 1);
+    }
+
+    /**
+     * Routing a counted k-mer to the batch of its shard
+     * @param kmer - encoded k-mer
+     * @param count - occurrences of the k-mer
+     * @throws IOException - Throws IO exception if a shard thread failed
+     */
+    @Override
+    public void accept(long kmer, int count) throws IOException
+    {
+        int shard = tree.shardOf(kmer);
+        Batch batch = batches[shard];
+        batch.kmers[batch.size] = kmer;
+        batch.counts[batch.size++] = count;
+        if (batch.size == BATCH_SIZE) {
+            hand(shard, batch);
+            batches[shard] = new Batch();
+        }
+    }
+
+    /**
+     * Handing the last batches to the shard threads and waiting until every
+     * k-mer is inserted
+     * @throws IOException - Throws IO exception if a shard thread failed
+     */
+    public void finish() throws IOException
+    {
+        for (int i = 0; i < queues.size(); i++) {
+            if (batches[i].size > 0) {
+                hand(i, batches[i]);
+                batches[i] = new Batch();
+            }
+            hand(i, END);
+        }
+        try {
+            for (Thread worker : workers) {
+                worker.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for the shard threads", e);
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Putting a batch in the queue of a shard, waiting while the queue is full
+     * @param shard - index of the shard
+     * @param batch - keys of the shard
+     * @throws IOException - Throws IO exception if a shard thread failed
+     */
+    private void hand(int shard, Batch batch) throws IOException
+    {
+        if (failure != null) {
+            throw failure;
+        }
+        try {
+            queues.get(shard).put(batch);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while handing keys to shard " + shard, e);
+        }
+    }
+
+    /**
+     * Loop of a shard thread, inserting batches until the end marker. After
+     * an error the queue is still drained so the parser is never blocked.
+     * @param shard - tree of the shard
+     * @param queue - batches of the shard
+     */
+    private void insertBatches(BTree shard, BlockingQueue<Batch> queue)
+    {
+        KmerCountMap counts = null;
+        if (countMapEntries > 0) {
+            counts = new KmerCountMap(Math.max(countMapEntries / workers.length, 1), shard::insert);
+        }
+        try {
+            Batch batch;
+            while ((batch = queue.take()) != END) {
+                if (failure != null) {
+                    continue;
+                }
+                try {
+                    for (int i = 0; i < batch.size; i++) {
+                        if (counts != null) {
+                            counts.add(batch.kmers[i], batch.counts[i]);
+                        } else {
+                            shard.insert(batch.kmers[i], batch.counts[i]);
+                        }
+                    }
+                } catch (IOException e) {
+                    failure = e;
+                }
+            }
+            if (counts != null && failure == null) {
+                counts.flush();
+            }
+        } catch (IOException e) {
+            failure = e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * K-mers of one shard with their counts, handed over as one queue entry
+     */
+    private static class Batch
+    {
+        final long[] kmers = new long[BATCH_SIZE];
+        final int[] counts = new int[BATCH_SIZE];
+        int size;
+    }
+}
@@ -1,10 +1,16 @@
 package cs321.search;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Scanner;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import cs321.btree.BTree;
+import cs321.btree.ShardedBTree;
 import cs321.common.ParseArgumentException;
 import cs321.common.ParseArgumentUtils;
 import cs321.create.SequenceUtils;
@@ -25,7 +31,9 @@ public class GeneBankSearchBTree
     static int subsequenceLength;
     static int debugLevel; 
     static int cacheSize;
+    static int threads;
     static BTree btree;
+    static ShardedBTree shardedTree; // set instead of btree when the btree file is a shard manifest
 
 	/**
 	 * 
@@ -46,43 +54,93 @@ public class GeneBankSearchBTree
     		Scanner scanner = new Scanner(file);
     		subsequenceLength = gS.getSequenceLength();
     		debugLevel = gS.debugLevel();
-    	if (gS.usingCache()) { // checking if the cache is being used or not 
+    		threads = gS.threads();
+    	if (gS.bTreeFile().endsWith(ShardedBTree.MANIFEST_SUFFIX)) {
+    		shardedTree = new ShardedBTree(new File(gS.bTreeFile()), gS.usingCache() && threads == 1, gS.cacheSize(), gS.cachePolicy());
+    		if (threads > 1) {
+    			shardedTree.enableConcurrentReads(gS.cacheSize());
+    		}
+    	} else if (threads > 1) { // worker threads share the tree read-only, the cache size is used for the shared page cache
+    		btree = new BTree(gS.getDegree(), subsequenceLength, new File(gS.bTreeFile()));
+    		btree.enableConcurrentReads(gS.cacheSize());
+    	} else if (gS.usingCache()) { // checking if the cache is being used or not 
             cacheUsed = 1;
             cacheSize = gS.cacheSize();
-            btree = new BTree(gS.getDegree(), subsequenceLength, new File(gS.bTreeFile()), true, cacheSize);
+            btree = new BTree(gS.getDegree(), subsequenceLength, new File(gS.bTreeFile()), true, cacheSize, gS.cachePolicy());
     	} else {
     		btree = new BTree(gS.getDegree(), subsequenceLength, new File(gS.bTreeFile()));
     	}
+    	if (shardedTree != null ? shardedTree.isIncomplete() : btree.isIncomplete()) {
+    		GeneBankSearchBTreeArguments.printUsageAndExit("An append to the BTree file did not finish, the tree has to be rebuilt!\n");
+    	}
+    	if (subsequenceLength != 0 && subsequenceLength != sequenceLength()) {
+    		GeneBankSearchBTreeArguments.printUsageAndExit("The sequence length did not match the BTree file!\n");
+    	}
+    	subsequenceLength = sequenceLength(); // the degree and sequence length are read from the header of the file
     	
     	while (scanner.hasNextLine()) { // checking whether the scanner could get more sequence from the file 
     		String line = scanner.nextLine();
         	
-        	if (line.length() != btree.getSequenceLength()) { // terminate the program if the lengths of the BTree file and the scanner is not compatible  
+        	if (line.length() != sequenceLength()) { // terminate the program if the lengths of the BTree file and the scanner is not compatible  
         		GeneBankSearchBTreeArguments.printUsageAndExit("The sequence length did not match!\n");
         		System.exit(1);
         	}
         	//Adds all queries to ArrayList
         	textQuer.add(line);        	
-        	long binary = SequenceUtils.DNAStringToLong(line.toLowerCase());
+        	long binary = 0;
+        	try {
+        		binary = SequenceUtils.DNAStringToLong(line);
+        	} catch (IllegalArgumentException e) { // an ambiguous base such as n would be looked up as another k-mer
+        		GeneBankSearchBTreeArguments.printUsageAndExit("Invalid query " + line + ", only a, c, g and t can be searched!\n");
+        	}
         	binaryQuer.add(binary);
     	}
     	
     	scanner.close();
     	
-        	for (int i = 0; i < binaryQuer.size(); i++) {
-        		int j = 0;
-        		long complement = binaryQuer.get(i);
-    			long result = btree.searchTwo(binaryQuer.get(i));
-    			while(j < subsequenceLength * 2) { // masking and shifting the binary queries to get complement
-    				complement = complement^(1<<j);
-    				j++;
+    	boolean canonical = isCanonical(); // both strands are stored under one key, one lookup per query
+    	long[] keys = new long[binaryQuer.size() * 2];
+    	int[] firstKey = new int[binaryQuer.size() + 1]; // keys of query i are [firstKey[i], firstKey[i + 1])
+    	int count = 0;
+    	for (int i = 0; i < binaryQuer.size(); i++) {
+    		long query = binaryQuer.get(i);
+    		firstKey[i] = count;
+    		if (canonical) {
+    			keys[count++] = SequenceUtils.canonical(query, subsequenceLength);
+    		} else {
+    			keys[count++] = query;
+    			if (!SequenceUtils.isPalindrome(query, subsequenceLength)) { // both strands of a palindrome are the query itself
+    				keys[count++] = SequenceUtils.getComplement(query, subsequenceLength); // the other strand
     			}
-    			long complementResult = btree.searchTwo(complement);
-    			result += complementResult;
-        			System.out.println(textQuer.get(i).toLowerCase() + " " + result); // print out the queries 
-        	}
+    		}
+    	}
+    	firstKey[binaryQuer.size()] = count;
+    	keys = Arrays.copyOf(keys, count);
+    	long[] results;
+    	if (threads > 1) {
+    		results = searchInParallel(keys);
+    	} else {
+    		results = searchBatch(keys); // one sorted pass over the tree for all queries
+    	}
+    	for (int i = 0; i < binaryQuer.size(); i++) {
+    		long result = 0;
+    		for (int k = firstKey[i]; k < firstKey[i + 1]; k++) {
+    			result += results[k];
+    		}
+    		System.out.println(textQuer.get(i).toLowerCase() + " " + result); // print out the queries 
+    	}
 
-    	btree.close();
+    	if (shardedTree != null) {
+    		shardedTree.close();
+    	} else {
+    		btree.close();
+    		if (debugLevel == 1 && btree.getCache() != null) { // cache statistics go to stderr so the query results stay clean
+    			System.err.println(btree.getCache());
+    		}
+    		if (debugLevel == 1 && btree.getPageCache() != null) {
+    			System.err.println(btree.getPageCache());
+    		}
+    	}
     	} catch (ParseArgumentException pae) {
     		GeneBankSearchBTreeArguments.printUsageAndExit("Parse Argument Exception");
     		System.exit(1);
@@ -91,7 +149,72 @@ public class GeneBankSearchBTree
     		GeneBankSearchBTreeArguments.printUsageAndExit("Parse Argument Exception");
     	}
     }
-}
 
+	/**
+	 * 
+	 * Splitting the queries into one part per thread, every thread looks up
+	 * its part with one batch search
+	 * @param keys - every query followed by its complement, if it is not the query itself
+	 * @return - frequencies in the order of the keys
+	 * @throws Exception - Throws exception if a worker fails
+	 */
+    private static long[] searchInParallel(long[] keys) throws Exception {
+    	ExecutorService workers = Executors.newFixedThreadPool(threads);
+    	try {
+    		ArrayList<Future<long[]>> parts = new ArrayList<Future<long[]>>();
+    		int partSize = (keys.length + threads - 1) / threads;
+    		for (int from = 0; from < keys.length; from += partSize) {
+    			long[] part = Arrays.copyOfRange(keys, from, Math.min(from + partSize, keys.length));
+    			parts.add(workers.submit(() -> searchBatch(part)));
+    		}
+    		long[] results = new long[keys.length];
+    		int from = 0;
+    		for (Future<long[]> part : parts) {
+    			long[] found = part.get();
+    			System.arraycopy(found, 0, results, from, found.length);
+    			from += found.length;
+    		}
+    		return results;
+    	} finally {
+    		workers.shutdown();
+    	}
+    }
 
+	/**
+	 * 
+	 * Looking up keys in the tree or in the shards of a sharded tree
+	 * @param keys - keys to look up
+	 * @return - frequencies in the order of the keys
+	 * @throws IOException - Throws IO exception if there are issues
+	 */
+    private static long[] searchBatch(long[] keys) throws IOException {
+    	if (shardedTree != null) {
+    		return shardedTree.searchBatch(keys);
+    	}
+    	return btree.searchBatch(keys);
+    }
 
+	/**
+	 * 
+	 * Getting whether the tree stores canonical k-mers, read from its metadata
+	 * @return - true if the tree or its shards are canonical
+	 */
+    private static boolean isCanonical() {
+    	if (shardedTree != null) {
+    		return shardedTree.isCanonical();
+    	}
+    	return btree.isCanonical();
+    }
+
+	/**
+	 * 
+	 * Getting the sequence length stored with the tree
+	 * @return - sequence length of the tree or of the shards
+	 */
+    private static int sequenceLength() {
+    	if (shardedTree != null) {
+    		return shardedTree.getSequenceLength();
+    	}
+    	return btree.getSequenceLength();
+    }
+}
@@ -1,5 +1,6 @@
 package cs321.search;
 
+import cs321.btree.CachePolicy;
 import cs321.common.ParseArgumentException;
 import cs321.create.GeneBankCreateBTreeArguments;
 
@@ -21,6 +22,8 @@ public class GeneBankSearchBTreeArguments
 	private String queryFile;
 	private String gbkFileName; 
 	private int degree;
+	private String cachePolicy = "lru"; // replacement policy of the cache: lru, clock, 2q or arc
+	private int threads = 1; // number of threads the queries are split across
 	public final int MAX_DEGREE_SIZE = 50; 
 
 	/**
@@ -58,7 +61,7 @@ public class GeneBankSearchBTreeArguments
     	try {
     		debugLevel = 0;
     		//checking valid number of arguments
-    		if(args.length < 4 || args.length > 7) {
+    		if(args.length < 3 || args.length > 9) {
     			printUsageAndExit("Invalid number of arguments!");
     		}
     		for(int i = 0; i < args.length; i++) {
@@ -84,6 +87,16 @@ public class GeneBankSearchBTreeArguments
 	    			if(cacheSize < 100 || cacheSize > 5000) {
 	    				printUsageAndExit("Invalid cache size!");
 	    			}
+	    		} else if(args[i].contains("--cachepolicy=")) {
+	    			cachePolicy = args[i].substring(14);
+	    			if(!CachePolicy.isValidName(cachePolicy)) {
+	    				printUsageAndExit("Invalid cache policy!");
+	    			}
+	    		} else if(args[i].contains("--threads=")) {
+	    			threads = Integer.parseInt(args[i].substring(10));
+	    			if(threads < 1) {
+	    				printUsageAndExit("Invalid number of threads!");
+	    			}
 	    		} else if(args[i].contains("--debug=")) {
 	    			debugLevel = Integer.parseInt(args[i].substring(8));
 	    			if (debugLevel < 0 || debugLevel > 1) {
@@ -134,6 +147,22 @@ public class GeneBankSearchBTreeArguments
 		}
 	}
 
+	/**
+	 * Getter method for the cache replacement policy
+	 * @return - lru, clock, 2q or arc
+	 */
+	public String cachePolicy() {
+		return this.cachePolicy;
+	}
+
+	/**
+	 * Getter method for the number of search threads
+	 * @return - Returns number of threads, 1 if the option was not given
+	 */
+	public int threads() {
+		return this.threads;
+	}
+
 	/**
 	 * Getter method for debug level
 	 * @return - Returns debug level
@@ -143,16 +172,18 @@ public class GeneBankSearchBTreeArguments
 	}
 
 	/**
-	 * Getter method for degree
-	 * @return - Returns degree of object
+	 * Getter method for degree, only used by files written before the
+	 * header that records it
+	 * @return - Returns degree of object, 0 if it was not given
 	 */
 	public int getDegree() {
 		return this.degree;
 	}
 
 	/**
-	 * Getter method for sequence length
-	 * @return - Returns sequence length
+	 * Getter method for sequence length, checked against the one recorded
+	 * in the BTree file
+	 * @return - Returns sequence length, 0 if it was not given
 	 */
 	public int getSequenceLength() {
 		return this.subsequenceLength;
@@ -165,8 +196,8 @@ public class GeneBankSearchBTreeArguments
 	 */
 	public static void printUsageAndExit(String errorMessage)
     {
-		System.out.println("java -jar build/libs/GeneBankSearchBTree.jar --cache=<0/1> --degree=<btree degree>" + 
-		" --btreefile=<BTree file> --length=<sequence length> --queryfile=<query file> [--cachesize=<n>] [--debug=0|1\n");
+		System.out.println("java -jar build/libs/GeneBankSearchBTree.jar --cache=<0/1> [--degree=<btree degree>]" + 
+		" --btreefile=<BTree file> [--length=<sequence length>] --queryfile=<query file> [--cachesize=<n>] [--cachepolicy=lru|clock|2q|arc] [--threads=<n>] [--debug=0|1\n");
        System.err.println(errorMessage);
         System.exit(1);
     }
@@ -45,8 +45,20 @@ public class GeneBankSearchDatabase
         		
         		line = queryScanner.nextLine().toLowerCase();
             	textQuer.add(line);        	
-            	complement = line.replace('a', 'T').replace('c', 'G');
-            	complement = complement.replace('t', 'a').replace('g', 'c').toLowerCase();
+            	long binary = 0;
+            	try {
+            		binary = SequenceUtils.DNAStringToLong(line);
+            	} catch (IllegalArgumentException e) { // an ambiguous base such as n can not be searched
+            		System.err.println("Invalid query " + line + ", only a, c, g and t can be searched!");
+            		GeneBankSearchDatabaseArguments.printUsage();
+            		System.exit(1);
+            	}
+            	binaryQuer.add(binary);
+            	if (SequenceUtils.isPalindrome(binary, line.length())) { // both strands of a palindrome are the query itself
+            		complement = null;
+            	} else {
+            		complement = SequenceUtils.longToDNAString(SequenceUtils.getComplement(binary, line.length()), line.length()); // the other strand, the same way GeneBankSearchBTree reads it
+            	}
             	complementQuer.add(complement);
         	}
         	
@@ -59,24 +71,37 @@ public class GeneBankSearchDatabase
     			Statement statement = con.createStatement();
     			statement.setQueryTimeout(30);    			
     			
+    			boolean canonical = false; // both strands are stored under one k-mer, one lookup per query
+    			try {
+    				rs = statement.executeQuery("SELECT canonical FROM metadata;");
+    				canonical = rs.next() && rs.getInt("canonical") == 1;
+    			} catch (SQLException e) { // databases written before the metadata table hold every k-mer as it was read
+    			}
+    			
     			int result = 0;
     			StringBuilder builder = new StringBuilder();
     			for (int i = 0; i < textQuer.size(); i++) {
     				try {
     					builder.setLength(0);
     					builder.append("SELECT frequency FROM sequences WHERE DNA ='");
-    					builder.append(textQuer.get(i));
+    					if (canonical) {
+    						int length = textQuer.get(i).length();
+    						builder.append(SequenceUtils.longToDNAString(SequenceUtils.canonical(binaryQuer.get(i), length), length));
+    					} else {
+    						builder.append(textQuer.get(i));
+    					}
     					builder.append("';");
     					rs = statement.executeQuery(builder.toString());
     					result = rs.getInt("frequency");
     					
-    					builder.setLength(0);
-    					builder.setLength(0);
-    					builder.append("SELECT * FROM sequences WHERE DNA = '");
-    					builder.append(complementQuer.get(i));
-    					builder.append("';");
-    					rs = statement.executeQuery(builder.toString());
-    					result += rs.getInt("frequency");
+    					if (!canonical && complementQuer.get(i) != null) {
+    						builder.setLength(0);
+    						builder.append("SELECT * FROM sequences WHERE DNA = '");
+    						builder.append(complementQuer.get(i));
+    						builder.append("';");
+    						rs = statement.executeQuery(builder.toString());
+    						result += rs.getInt("frequency");
+    					}
     					
     					System.out.println(textQuer.get(i) + " " + result);   					
     				} catch(SQLException e) {
@@ -3,6 +3,8 @@ package cs321.btree;
 import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.io.File;
@@ -10,6 +12,9 @@ import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
 
 /**
  * Filename: BTreeTest.java
@@ -71,7 +76,7 @@ public class BTreeTest
 			}
 		}
 		for(int i = 1; i <= node.getNumKeys(); i++) {
-			if(node.keys[i].getKey() != buffer.getLong() || node.keys[i].getFrequency() !=buffer.getLong()) {
+			if(node.keys[i] != buffer.getLong() || node.frequencies[i] != buffer.getInt()) {
 				match = false;
 			}
 		}
@@ -863,4 +868,609 @@ public class BTreeTest
 		}
 		testFile.delete();
 	}
+
+	/**
+	 * Tester for bulk loading sorted keys into packed nodes
+	 */
+	@Test
+	public void BTreeBulkLoad1to13() {
+		File testFile = new File("BTreeBulkLoad1to13");
+		BTree testTree = new BTree(2,1, testFile);
+		try {
+			BTreeBulkLoader loader = testTree.bulkLoader();
+			for(int i = 1; i <= 13; i++) {
+				loader.add(i, i);
+			}
+			loader.finish();
+			testTree.closeTree();
+			assertEquals("4 8 12", testTree.getNodeAt(1).toString());
+			assertEquals("1 2 3", testTree.getNodeAt(2).toString());
+			assertEquals("5 6 7", testTree.getNodeAt(3).toString());
+			assertEquals("9 10 11", testTree.getNodeAt(4).toString());
+			assertEquals("13", testTree.getNodeAt(5).toString());
+			for(int i = 1; i <= 13; i++) {
+				assertEquals(i, testTree.searchTwo(i));
+			}
+		} catch(IOException e) {
+			e.printStackTrace();
+			fail("exception encountered");
+		}
+		testFile.delete();
+	}
+
+	/**
+	 * Tester for bulk loading where the last nodes borrow keys from their left siblings
+	 */
+	@Test
+	public void BTreeBulkLoad1to16() {
+		File testFile = new File("BTreeBulkLoad1to16");
+		BTree testTree = new BTree(2,1, testFile);
+		try {
+			BTreeBulkLoader loader = testTree.bulkLoader();
+			for(int i = 1; i <= 16; i++) {
+				loader.add(i, 1);
+			}
+			loader.add(16, 2);
+			loader.finish();
+			testTree.insert(17);
+			testTree.closeTree();
+			assertEquals("12", testTree.getNodeAt(1).toString());
+			assertEquals("4 8", testTree.getNodeAt(2).toString());
+			assertEquals("15", testTree.getNodeAt(3).toString());
+			assertEquals("13 14", testTree.getNodeAt(7).toString());
+			assertEquals("16 17", testTree.getNodeAt(8).toString());
+			assertEquals(3, testTree.searchTwo(16));
+			assertEquals(1, testTree.searchTwo(17));
+			assertEquals(0, testTree.searchTwo(18));
+		} catch(IOException e) {
+			e.printStackTrace();
+			fail("exception encountered");
+		}
+		testFile.delete();
+	}
+
+	/**
+	 * Tester for inserting and searching with every cache replacement policy and a small cache
+	 */
+	@Test
+	public void BTreeCachePolicies() {
+		for(String policy : CachePolicy.NAMES) {
+			File testFile = new File("BTreeCachePolicies");
+			BTree testTree = new BTree(2,4, testFile, true, 3, policy);
+			try {
+				for(int i = 0; i < 200; i++) {
+					testTree.insert((i * 37) % 50);
+				}
+				for(int i = 0; i < 50; i++) {
+					assertEquals(policy, 4, testTree.searchTwo(i));
+				}
+				testTree.closeTree();
+				testTree.close();
+			} catch(IOException e) {
+				e.printStackTrace();
+				fail("exception encountered");
+			}
+			testFile.delete();
+		}
+	}
+
+	/**
+	 * Test inserting with the background writer holding only a few dirty pages,
+	 * with and without a cache, and reading the file back after it is closed
+	 */
+	@Test
+	public void BTreeWriteBehind() {
+		for(int useCache = 0; useCache <= 1; useCache++) {
+			File testFile = new File("BTreeWriteBehind");
+			BTree testTree = new BTree(2,4, testFile, useCache == 1, 3);
+			testTree.enableWriteBehind(2);
+			try {
+				for(int i = 0; i < 200; i++) {
+					testTree.insert((i * 37) % 50);
+				}
+				for(int i = 0; i < 50; i++) {
+					assertEquals(4, testTree.searchTwo(i));
+				}
+				testTree.closeTree();
+				testTree.close();
+				
+				BTree reopened = new BTree(2, 4, testFile);
+				for(int i = 0; i < 50; i++) {
+					assertEquals(4, reopened.searchTwo(i));
+				}
+				reopened.close();
+			} catch(IOException e) {
+				e.printStackTrace();
+				fail("exception encountered");
+			}
+			testFile.delete();
+		}
+	}
+
+	/**
+	 * Test that findKey on a node and on a view of its page gives the slot
+	 * the linear scan gives, for every node size up to 2t-1 keys
+	 */
+	@Test
+	public void BTreeNodeFindKey() {
+		int degree = 5;
+		for(int numKeys = 0; numKeys < 2 * degree; numKeys++) {
+			BTreeNode node = new BTreeNode(degree, 0);
+			node.setIsLeaf(true);
+			node.setNumKeys(numKeys);
+			for(int i = 1; i <= numKeys; i++) {
+				node.keys[i] = i * 10;
+			}
+			BTreeNodeView view = new BTreeNodeView(4096);
+			node.serialize(view.getPage());
+			view.wrap(0);
+			for(long key = 0; key <= numKeys * 10 + 10; key += 5) {
+				int expected = 1;
+				while(expected <= numKeys && key > node.keys[expected]) {
+					expected++;
+				}
+				assertEquals(expected, node.findKey(key));
+				assertEquals(expected, view.findKey(key));
+			}
+		}
+	}
+
+	/**
+	 * Test that a batch lookup with unsorted, repeated and missing keys gives
+	 * the same frequencies as looking up the keys one by one
+	 */
+	@Test
+	public void BTreeSearchBatch() {
+		File testFile = new File("BTreeSearchBatch");
+		BTree testTree = new BTree(2,4, testFile);
+		try {
+			for(int i = 0; i < 300; i++) {
+				testTree.insert((i * 37) % 101);
+			}
+			long[] keys = new long[250];
+			for(int i = 0; i < keys.length; i++) {
+				keys[i] = (i * 53) % 125;
+			}
+			long[] results = testTree.searchBatch(keys);
+			for(int i = 0; i < keys.length; i++) {
+				assertEquals(testTree.searchTwo(keys[i]), results[i]);
+			}
+			assertEquals(0, testTree.searchBatch(new long[0]).length);
+			testTree.close();
+		} catch(IOException e) {
+			e.printStackTrace();
+			fail("exception encountered");
+		}
+		testFile.delete();
+	}
+
+	/**
+	 * Test several threads searching one tree in concurrent read mode with a
+	 * small shared page cache, and inserts being refused in that mode
+	 */
+	@Test
+	public void BTreeConcurrentReads() {
+		File testFile = new File("BTreeConcurrentReads");
+		BTree testTree = new BTree(2,4, testFile, true, 3);
+		try {
+			for(int i = 0; i < 400; i++) {
+				testTree.insert((i * 37) % 100);
+			}
+			testTree.enableConcurrentReads(5);
+			final int[] failures = new int[1];
+			Thread[] readers = new Thread[4];
+			for(int t = 0; t < readers.length; t++) {
+				final int offset = t;
+				readers[t] = new Thread(() -> {
+					try {
+						for(int round = 0; round < 20; round++) {
+							for(int i = 0; i < 100; i++) {
+								long key = (i + offset * 25) % 110;
+								if(testTree.searchTwo(key) != (key < 100 ? 4 : 0)) {
+									synchronized(failures) { failures[0]++; }
+								}
+							}
+						}
+					} catch(IOException e) {
+						synchronized(failures) { failures[0]++; }
+					}
+				});
+				readers[t].start();
+			}
+			for(Thread reader : readers) {
+				reader.join();
+			}
+			assertEquals(0, failures[0]);
+			try {
+				testTree.insert(1);
+				fail("insert allowed in concurrent read mode");
+			} catch(IllegalStateException e) {
+				// expected
+			}
+			testTree.close();
+		} catch(IOException | InterruptedException e) {
+			e.printStackTrace();
+			fail("exception encountered");
+		}
+		testFile.delete();
+	}
+
+	/**
+	 * Test a tree split into 4 shards by the leading base: the keys go to the
+	 * shard of their leading base and can be found again through the manifest
+	 */
+	@Test
+	public void BTreeShards() {
+		File baseFile = new File("BTreeShards");
+		ShardedBTree testTree = new ShardedBTree(2, 3, baseFile, 4, false, 0, "lru");
+		try {
+			long[] keys = new long[64];
+			for(int i = 0; i < 64; i++) {
+				keys[i] = i;
+				for(int j = 0; j <= i % 3; j++) {
+					testTree.insert(i);
+				}
+			}
+			assertEquals(0, testTree.shardOf(15));
+			assertEquals(1, testTree.shardOf(16));
+			assertEquals(3, testTree.shardOf(63));
+			testTree.closeTree();
+			testTree.close();
+			
+			ShardedBTree reopened = new ShardedBTree(testTree.getManifest(), false, 0, "lru");
+			assertEquals(4, reopened.getShardCount());
+			long[] results = reopened.searchBatch(keys);
+			for(int i = 0; i < 64; i++) {
+				assertEquals(i % 3 + 1, results[i]);
+				assertEquals(i % 3 + 1, reopened.searchTwo(i));
+				assertEquals(i / 16 == 1 ? i % 3 + 1 : 0, reopened.getShard(1).searchTwo(i));
+			}
+			reopened.close();
+		} catch(IOException e) {
+			e.printStackTrace();
+			fail("exception encountered");
+		}
+		for(int i = 0; i < 4; i++) {
+			new File("BTreeShards.shard" + i).delete();
+		}
+		testTree.getManifest().delete();
+	}
+
+	/**
+	 * Test inserting keys with a number of occurrences: new keys start at the
+	 * delta and keys already in the tree, in leaves or inner nodes, add it
+	 */
+	@Test
+	public void BTreeInsertDelta() {
+		File testFile = new File("BTreeInsertDelta");
+		BTree testTree = new BTree(2,4, testFile);
+		try {
+			for(int i = 1; i <= 30; i++) {
+				testTree.insert(i, i);
+			}
+			for(int i = 1; i <= 30; i++) {
+				testTree.insert(i, 100);
+				testTree.insert(i);
+			}
+			for(int i = 1; i <= 30; i++) {
+				assertEquals(i + 101, testTree.searchTwo(i));
+			}
+			testTree.close();
+		} catch(IOException e) {
+			e.printStackTrace();
+			fail("exception encountered");
+		}
+		testFile.delete();
+	}
+
+	/**
+	 * Test walking the keys with a cursor: every key in order, from a key
+	 * that is or is not in the tree, and only the keys of a range
+	 */
+	@Test
+	public void BTreeCursor() {
+		File testFile = new File("BTreeCursor");
+		BTree testTree = new BTree(2,6, testFile, true, 5);
+		try {
+			BTreeCursor cursor = testTree.cursor();
+			assertFalse(cursor.next());
+			for(int i = 200; i > 0; i--) {
+				testTree.insert(3 * i, i % 4 + 1);
+				testTree.insert(3 * i);
+			}
+			cursor.first();
+			for(int i = 1; i <= 200; i++) {
+				assertTrue(cursor.next());
+				assertEquals(3 * i, cursor.getKey());
+				assertEquals(i % 4 + 2, cursor.getFrequency());
+			}
+			assertFalse(cursor.next());
+			cursor.seek(151);
+			assertTrue(cursor.next());
+			assertEquals(153, cursor.getKey());
+			cursor.seek(300);
+			assertTrue(cursor.next());
+			assertEquals(300, cursor.getKey());
+			assertTrue(cursor.next());
+			assertEquals(303, cursor.getKey());
+			cursor.range(100, 200);
+			for(int key = 102; key <= 198; key += 3) {
+				assertTrue(cursor.next());
+				assertEquals(key, cursor.getKey());
+			}
+			assertFalse(cursor.next());
+			cursor.range(601, 700);
+			assertFalse(cursor.next());
+			testTree.close();
+		} catch(IOException e) {
+			e.printStackTrace();
+			fail("exception encountered");
+		}
+		testFile.delete();
+	}
+
+	/**
+	 * Test that the canonical flag is kept in the metadata and that files
+	 * without it are read as not canonical
+	 */
+	@Test
+	public void BTreeCanonicalFlag() {
+		File canonicalFile = new File("BTreeCanonicalFlag");
+		File plainFile = new File("BTreePlainFlag");
+		try {
+			BTree canonicalTree = new BTree(2,4, canonicalFile);
+			canonicalTree.setCanonical(true);
+			canonicalTree.insert(5);
+			canonicalTree.closeTree();
+			canonicalTree.close();
+			BTree plainTree = new BTree(2,4, plainFile);
+			plainTree.insert(5);
+			plainTree.closeTree();
+			plainTree.close();
+			BTree reopened = new BTree(2,4, canonicalFile);
+			assertTrue(reopened.isCanonical());
+			assertEquals(1, reopened.searchTwo(5));
+			reopened.close();
+			reopened = new BTree(2,4, plainFile);
+			assertFalse(reopened.isCanonical());
+			reopened.close();
+		} catch(IOException e) {
+			e.printStackTrace();
+			fail("exception encountered");
+		}
+		canonicalFile.delete();
+		plainFile.delete();
+	}
+
+	/**
+	 * Test building and reopening a tree with varint pages: the degree is
+	 * picked from the page size, every key is found again, the cursor walks
+	 * them in order and the file is smaller than with fixed pages
+	 */
+	@Test
+	public void BTreeVarintPages() {
+		File varintFile = new File("BTreeVarintPages");
+		File fixedFile = new File("BTreeFixedPages");
+		try {
+			BTree varintTree = new BTree(0, 11, varintFile, true, 10, "lru", "varint");
+			BTree fixedTree = new BTree(102, 11, fixedFile);
+			assertEquals(157, varintTree.getDegree());
+			Random random = new Random(11);
+			TreeMap<Long, Integer> expected = new TreeMap<Long, Integer>();
+			for(int i = 0; i < 60000; i++) {
+				long key = random.nextInt(1 << 22);
+				int delta = random.nextInt(3) == 0 ? 1000000 : 1;
+				varintTree.insert(key, delta);
+				fixedTree.insert(key, delta);
+				expected.merge(key, delta, Integer::sum);
+			}
+			varintTree.closeTree();
+			varintTree.close();
+			fixedTree.closeTree();
+			fixedTree.close();
+			assertTrue(varintFile.length() < fixedFile.length());
+
+			BTree reopened = new BTree(0, 11, varintFile);
+			assertEquals("varint", reopened.getPageCodec().getName());
+			for(Map.Entry<Long, Integer> entry : expected.entrySet()) {
+				assertEquals((long) entry.getValue(), reopened.searchTwo(entry.getKey()));
+			}
+			BTreeCursor cursor = reopened.cursor();
+			for(Map.Entry<Long, Integer> entry : expected.entrySet()) {
+				assertTrue(cursor.next());
+				assertEquals((long) entry.getKey(), cursor.getKey());
+				assertEquals((int) entry.getValue(), cursor.getFrequency());
+			}
+			assertFalse(cursor.next());
+			reopened.close();
+		} catch(IOException e) {
+			e.printStackTrace();
+			fail("exception encountered");
+		}
+		varintFile.delete();
+		fixedFile.delete();
+	}
+
+	/**
+	 * Test that a tree with 16 KB pages picks its degree from the page size and
+	 * is reopened from its header without its degree and sequence length, and
+	 * that a file written before there was a header is still read
+	 */
+	@Test
+	public void BTreePageSizeHeader() {
+		File pagedFile = new File("BTreePageSizeHeader");
+		File legacyFile = new File("BTreeLegacyHeader");
+		try {
+			try {
+				new BTree(0, 11, pagedFile, false, 0, "lru", "fixed", 5000);
+				fail("a page size that is not a power of 2 was accepted");
+			} catch(IllegalArgumentException e) {
+			}
+			BTree pagedTree = new BTree(0, 11, pagedFile, false, 0, "lru", "fixed", 16384);
+			assertEquals(409, pagedTree.getDegree());
+			for(long key = 0; key < 5000; key++) {
+				pagedTree.insert(key * 7, (int) (key % 5) + 1);
+			}
+			pagedTree.closeTree();
+			pagedTree.close();
+			BTree reopened = new BTree(2, 1, pagedFile);
+			assertEquals(409, reopened.getDegree());
+			assertEquals(11, reopened.getSequenceLength());
+			assertEquals(16384, reopened.getPageSize());
+			for(long key = 0; key < 5000; key++) {
+				assertEquals(key % 5 + 1, reopened.searchTwo(key * 7));
+			}
+			reopened.close();
+
+			RandomAccessFile raf = new RandomAccessFile(legacyFile, "rw"); // metadata and one leaf as they were written before the header
+			ByteBuffer metadata = ByteBuffer.allocate(100);
+			metadata.putLong(100).putLong(100 + 4096).putInt(4096).putInt(0);
+			raf.write(metadata.array());
+			ByteBuffer leaf = ByteBuffer.allocate(4096);
+			leaf.putInt(1).putInt(1).putLong(7).putInt(3);
+			raf.write(leaf.array());
+			raf.close();
+			BTree legacyTree = new BTree(2, 4, legacyFile);
+			assertEquals(4096, legacyTree.getPageSize());
+			assertEquals(3, legacyTree.searchTwo(7));
+			legacyTree.insert(9);
+			legacyTree.closeTree();
+			legacyTree.close();
+			legacyTree = new BTree(2, 4, legacyFile);
+			assertEquals(3, legacyTree.searchTwo(7));
+			assertEquals(1, legacyTree.searchTwo(9));
+			legacyTree.close();
+			raf = new RandomAccessFile(legacyFile, "r");
+			assertEquals(100, raf.readLong()); // still the legacy metadata
+			raf.close();
+		} catch(IOException e) {
+			e.printStackTrace();
+			fail("exception encountered");
+		}
+		pagedFile.delete();
+		legacyFile.delete();
+	}
+
+	/**
+	 * Test that an append adds to the frequencies of a tree built before and
+	 * that an append that is not closed leaves the tree marked incomplete
+	 */
+	@Test
+	public void BTreeAppend() {
+		File testFile = new File("BTreeAppend");
+		try {
+			BTree testTree = new BTree(2, 4, testFile, true, 3);
+			for(long key = 0; key < 50; key++) {
+				testTree.insert(key);
+			}
+			testTree.closeTree();
+			testTree.close();
+
+			testTree = new BTree(0, 0, testFile, true, 3);
+			assertFalse(testTree.isIncomplete());
+			testTree.beginAppend();
+			for(long key = 25; key < 75; key++) {
+				testTree.insert(key, 2);
+			}
+			testTree.closeTree();
+			testTree.close();
+			testTree = new BTree(0, 0, testFile);
+			assertFalse(testTree.isIncomplete());
+			for(long key = 0; key < 75; key++) {
+				assertEquals(key < 25 ? 1 : key < 50 ? 3 : 2, testTree.searchTwo(key));
+			}
+			testTree.beginAppend();
+			testTree.insert(80);
+			testTree.close(); // the append does not finish
+			testTree = new BTree(0, 0, testFile);
+			assertTrue(testTree.isIncomplete());
+			testTree.close();
+		} catch(IOException e) {
+			e.printStackTrace();
+			fail("exception encountered");
+		}
+		testFile.delete();
+	}
+
+	/**
+	 * Test merging trees with overlapping keys: every key is in the merged
+	 * tree once with the sum of its frequencies, and trees of different
+	 * sequence lengths are not merged
+	 */
+	@Test
+	public void BTreeMerge() {
+		File[] inputFiles = {new File("BTreeMerge0"), new File("BTreeMerge1"), new File("BTreeMerge2")};
+		File mergedFile = new File("BTreeMerged");
+		File otherFile = new File("BTreeMergeOther");
+		try {
+			BTree[] inputs = new BTree[inputFiles.length];
+			TreeMap<Long, Integer> expected = new TreeMap<Long, Integer>();
+			Random random = new Random(24);
+			for(int i = 0; i < inputs.length; i++) {
+				inputs[i] = new BTree(2 + i, 8, inputFiles[i]);
+				for(int j = 0; j < 2000; j++) {
+					long key = random.nextInt(5000);
+					inputs[i].insert(key, i + 1);
+					expected.merge(key, i + 1, Integer::sum);
+				}
+				inputs[i].closeTree();
+			}
+			BTree merged = new BTree(3, 8, mergedFile);
+			assertEquals(expected.size(), new BTreeMerger(inputs).mergeInto(merged));
+			merged.closeTree();
+			BTreeCursor cursor = merged.cursor();
+			for(Map.Entry<Long, Integer> entry : expected.entrySet()) {
+				assertTrue(cursor.next());
+				assertEquals((long) entry.getKey(), cursor.getKey());
+				assertEquals((int) entry.getValue(), cursor.getFrequency());
+			}
+			assertFalse(cursor.next());
+			merged.close();
+
+			BTree other = new BTree(2, 7, otherFile);
+			try {
+				new BTreeMerger(inputs[0], other);
+				fail("trees of different sequence lengths were merged");
+			} catch(IllegalArgumentException e) {
+			}
+			other.close();
+			for(BTree input : inputs) {
+				input.close();
+			}
+		} catch(IOException e) {
+			e.printStackTrace();
+			fail("exception encountered");
+		}
+		for(File inputFile : inputFiles) {
+			inputFile.delete();
+		}
+		mergedFile.delete();
+		otherFile.delete();
+	}
+
+	/**
+	 * Test that reading a node through the cache and writing it back counts
+	 * as one reference of the cache, not two
+	 */
+	@Test
+	public void BTreeCacheWriteIsNotAReference() {
+		File testFile = new File("BTreeCacheWriteIsNotAReference");
+		try {
+			BTree testTree = new BTree(2, 4, testFile, true, 100, "arc");
+			for(long key = 0; key < 20; key++) {
+				testTree.insert(key);
+			}
+			long rootAddress = testTree.prepareScan();
+			BTreeCache cache = testTree.getCache();
+			int references = cache.getReferences();
+			BTreeNode node = testTree.cacheRead(rootAddress);
+			testTree.cacheWrite(node);
+			assertEquals(references + 1, cache.getReferences());
+			testTree.close();
+		} catch(IOException e) {
+			e.printStackTrace();
+			fail("exception encountered");
+		}
+		testFile.delete();
+	}
 }
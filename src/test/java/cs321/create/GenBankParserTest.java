@@ -0,0 +1,151 @@
+package cs321.create;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Filename: GenBankParserTest.java
+ * Unit test for the memory-mapped GenBank parser
+ * @author Harry Nguyen
+ */
+public class GenBankParserTest
+{
+    /**
+     * Tester for checking that only ORIGIN blocks are read and line numbers and spaces are skipped
+     * @throws IOException - Throws IO exception if the test file can not be written
+     */
+    @Test
+    public void originBlocksTest() throws IOException
+    {
+        File testFile = new File("originBlocksTest.gbk");
+        FileWriter writer = new FileWriter(testFile);
+        writer.write("LOCUS       TEST   14 bp    DNA\n");
+        writer.write("FEATURES    /note=\"acgt ORIGIN\"\n");
+        writer.write("ORIGIN      \n");
+        writer.write("        1 acgtnacg tt\n");
+        writer.write("       11 gca\n");
+        writer.write("//\n");
+        writer.write("LOCUS       TEST2\n");
+        writer.write("ORIGIN\n");
+        writer.write("        1 ttt\n");
+        writer.write("//\n");
+        writer.close();
+
+        final StringBuilder bases = new StringBuilder();
+        final List<Integer> blockEnds = new ArrayList<Integer>();
+        GenBankParser parser = new GenBankParser(testFile);
+        parser.parse(new BaseConsumer() {
+            @Override
+            public void addCode(int code)
+            {
+                bases.append(code < 0 ? 'n' : "acgt".charAt(code));
+            }
+
+            @Override
+            public void endSequence()
+            {
+                blockEnds.add(bases.length());
+            }
+        });
+        testFile.delete();
+
+        assertEquals("acgtnacgttgcattt", bases.toString());
+        assertEquals(2, parser.getRecords());
+        assertEquals(13, (int) blockEnds.get(0));
+        assertEquals(16, (int) blockEnds.get(1));
+    }
+
+    /**
+     * Tester for checking that a block cut into two pieces at any byte gives
+     * the k-mers of the whole block, each once, when every piece reads k - 1
+     * bases past its end
+     * @throws IOException - Throws IO exception if the test file can not be written
+     */
+    @Test
+    public void splitBlockTest() throws IOException
+    {
+        File testFile = new File("splitBlockTest.gbk");
+        FileWriter writer = new FileWriter(testFile);
+        writer.write("LOCUS       TEST   30 bp    DNA\n");
+        writer.write("ORIGIN\n");
+        writer.write("        1 acgtacggtt cannttgaca\n");
+        writer.write("       21 ggatcgatcc\n");
+        writer.write("//\n");
+        writer.close();
+
+        GenBankParser parser = new GenBankParser(testFile);
+        long[] blocks = parser.findSequences();
+        assertEquals(2, blocks.length);
+        List<Long> whole = new ArrayList<Long>();
+        KmerEncoder encoder = new KmerEncoder(4, whole::add);
+        parser.parseRange(blocks[0], blocks[1], blocks[1], 3, encoder);
+        assertEquals(9 + 13, whole.size()); // nn splits the 30 bases into runs of 12 and 16
+
+        for (long split = blocks[0]; split <= blocks[1]; split++) {
+            List<Long> pieces = new ArrayList<Long>();
+            parser.parseRange(blocks[0], split, blocks[1], 3, new KmerEncoder(4, pieces::add));
+            parser.parseRange(split, blocks[1], blocks[1], 3, new KmerEncoder(4, pieces::add));
+            assertEquals(whole, pieces);
+        }
+        testFile.delete();
+    }
+
+    /**
+     * Tester for checking that the scans of ranges of any size, chained in
+     * order, find the same sequence lines and blocks as findSequences()
+     * @throws IOException - Throws IO exception if the test file can not be written
+     */
+    @Test
+    public void scanRangeTest() throws IOException
+    {
+        File testFile = new File("scanRangeTest.gbk");
+        FileWriter writer = new FileWriter(testFile);
+        writer.write("LOCUS       TEST   14 bp    DNA\n");
+        writer.write("FEATURES    /note=\"acgt ORIGIN\"\n");
+        writer.write("ORIGIN      \n");
+        writer.write("        1 acgtnacg tt\n");
+        writer.write("       11 gca\n");
+        writer.write("//\n");
+        writer.write("ORIGINAL\n");
+        writer.write("        1 ttt\n");
+        writer.write("// ORIGIN\n");
+        writer.write("ORIGIN\n");
+        writer.write("        1 gg");
+        writer.close();
+
+        GenBankParser parser = new GenBankParser(testFile);
+        long[] blocks = parser.findSequences();
+        assertEquals(6, blocks.length);
+        long size = testFile.length();
+        for (long rangeSize = 1; rangeSize <= size; rangeSize++) {
+            List<Long> found = new ArrayList<Long>();
+            int records = 0;
+            int state = GenBankParser.RangeScan.FILE_START;
+            for (long start = 0; start < size; start += rangeSize) {
+                GenBankParser.RangeScan scan = parser.scanRange(start, Math.min(start + rangeSize, size));
+                for (long offset : scan.getSequences(state)) {
+                    if (!found.isEmpty() && found.get(found.size() - 1) == offset) {
+                        found.remove(found.size() - 1); // a piece going on in the next range
+                    } else {
+                        found.add(offset);
+                    }
+                }
+                records += scan.getBlockStarts(state);
+                state = scan.getEndState(state);
+            }
+            assertEquals(blocks.length / 2, records);
+            assertEquals(blocks.length, found.size());
+            for (int i = 0; i < blocks.length; i++) {
+                assertEquals(blocks[i], (long) found.get(i));
+            }
+        }
+        testFile.delete();
+    }
+}
@@ -0,0 +1,99 @@
+package cs321.create;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.Assert.*;
+
+/**
+ * Filename: KmerCountMapTest.java
+ * Unit test for the k-mer count map
+ * @author Harry Nguyen
+ */
+public class KmerCountMapTest
+{
+    /**
+     * Tester for checking that a flush hands over every k-mer once, in
+     * ascending order, with the number of times it was added
+     * @throws Exception - Throws exception if there is an error in counting
+     */
+    @Test
+    public void sortedFlushTest() throws Exception
+    {
+        List<Long> kmers = new ArrayList<Long>();
+        List<Integer> counts = new ArrayList<Integer>();
+        KmerCountMap map = new KmerCountMap(100, (kmer, count) -> { kmers.add(kmer); counts.add(count); });
+        for (int i = 0; i < 300; i++) {
+            map.accept((i * 7) % 50);
+        }
+        map.add(3, 10);
+        assertEquals(50, map.getSize());
+        assertEquals(16, map.get(3));
+        assertEquals(0, map.get(51));
+        map.flush();
+
+        assertEquals(0, map.getSize());
+        assertEquals(50, kmers.size());
+        for (int i = 0; i < 50; i++) {
+            assertEquals(i, (long) kmers.get(i));
+            assertEquals(i == 3 ? 16 : 6, (int) counts.get(i));
+        }
+    }
+
+    /**
+     * Tester for checking that the map flushes by itself once it holds its
+     * maximum number of distinct k-mers
+     * @throws Exception - Throws exception if there is an error in counting
+     */
+    @Test
+    public void fullMapFlushTest() throws Exception
+    {
+        List<Long> kmers = new ArrayList<Long>();
+        KmerCountMap map = new KmerCountMap(4, (kmer, count) -> kmers.add(kmer));
+        long[] input = {9, 2, 9, 7, 2, 5, 1, 1, 8};
+        for (long kmer : input) {
+            map.accept(kmer);
+        }
+        assertEquals(1, map.getFlushes());
+        assertEquals(4, kmers.size());
+        assertEquals("[2, 5, 7, 9]", kmers.toString());
+        map.flush();
+        assertEquals("[2, 5, 7, 9, 1, 8]", kmers.toString());
+    }
+
+    /**
+     * Tester for checking that a flush of many random k-mers hands them over
+     * in ascending order, every one with its own count
+     * @throws Exception - Throws exception if there is an error in counting
+     */
+    @Test
+    public void randomFlushTest() throws Exception
+    {
+        List<Long> kmers = new ArrayList<Long>();
+        List<Integer> counts = new ArrayList<Integer>();
+        KmerCountMap map = new KmerCountMap(100000, (kmer, count) -> { kmers.add(kmer); counts.add(count); });
+        TreeMap<Long, Integer> expected = new TreeMap<Long, Integer>();
+        Random random = new Random(321);
+        for (int i = 0; i < 60000; i++) {
+            long kmer = random.nextInt(4) == 0 ? random.nextInt(64) : random.nextLong() >>> 2; // some k-mers many times
+            int delta = random.nextInt(5) + 1;
+            map.add(kmer, delta);
+            expected.merge(kmer, delta, Integer::sum);
+        }
+        map.flush();
+
+        assertEquals(1, map.getFlushes());
+        assertEquals(expected.size(), kmers.size());
+        int i = 0;
+        for (Map.Entry<Long, Integer> entry : expected.entrySet()) {
+            assertEquals((long) entry.getKey(), (long) kmers.get(i));
+            assertEquals((int) entry.getValue(), (int) counts.get(i));
+            i++;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package cs321.create;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Filename: KmerEncoderTest.java
+ * Unit test for the rolling k-mer encoder
+ * Compares the rolling windows with the values from SequenceUtils
+ * @author Harry Nguyen
+ */
+public class KmerEncoderTest
+{
+    /**
+     * Tester for checking that every window matches the encoding of its substring
+     * @throws Exception - Throws exception if there is an error in encoding values
+     */
+    @Test
+    public void rollingWindowsTest() throws Exception
+    {
+        String sequence = "acgtacgttgcaaacg";
+        List<Long> kmers = new ArrayList<Long>();
+        KmerEncoder encoder = new KmerEncoder(4, kmers::add);
+        encoder.encode(sequence);
+
+        assertEquals(sequence.length() - 3, kmers.size());
+        for (int i = 0; i < kmers.size(); i++)
+        {
+            assertEquals(SequenceUtils.DNAStringToLong(sequence.substring(i, i + 4)), (long) kmers.get(i));
+        }
+    }
+
+    /**
+     * Tester for checking that ambiguous bases restart the window
+     * @throws Exception - Throws exception if there is an error in encoding values
+     */
+    @Test
+    public void ambiguousBaseTest() throws Exception
+    {
+        List<Long> kmers = new ArrayList<Long>();
+        KmerEncoder encoder = new KmerEncoder(3, kmers::add);
+        encoder.encode("ACnGTAyCat");
+
+        assertEquals(2, kmers.size());
+        assertEquals(SequenceUtils.DNAStringToLong("gta"), (long) kmers.get(0));
+        assertEquals(SequenceUtils.DNAStringToLong("cat"), (long) kmers.get(1));
+    }
+
+    /**
+     * Tester for checking that canonical windows are the smaller of the k-mer
+     * and its reverse complement, also after an ambiguous base
+     * @throws Exception - Throws exception if there is an error in encoding values
+     */
+    @Test
+    public void canonicalWindowsTest() throws Exception
+    {
+        List<Long> kmers = new ArrayList<Long>();
+        KmerEncoder encoder = new KmerEncoder(5, true, kmers::add);
+        encoder.encode("ttgcanaacgtcc");
+
+        String[] expected = {"tgcaa", "aacgt", "acgtc", "cgtcc"}; // ttgca is larger than its reverse complement tgcaa
+        assertEquals(expected.length, kmers.size());
+        for (int i = 0; i < expected.length; i++)
+        {
+            assertEquals(SequenceUtils.DNAStringToLong(expected[i]), (long) kmers.get(i));
+        }
+        assertEquals(SequenceUtils.DNAStringToLong("ggacg"), SequenceUtils.reverseComplement(SequenceUtils.DNAStringToLong("cgtcc"), 5));
+    }
+
+    /**
+     * Tester for checking that encoders fed through a fan-out see the same
+     * k-mers as an encoder of their own length
+     * @throws Exception - Throws exception if there is an error in encoding values
+     */
+    @Test
+    public void fanOutTest() throws Exception
+    {
+        String sequence = "acgtnacgttgcaaacgtac";
+        List<Long> threes = new ArrayList<Long>();
+        List<Long> fives = new ArrayList<Long>();
+        BaseFanOut fanOut = new BaseFanOut(new KmerEncoder(3, threes::add), new KmerEncoder(5, fives::add));
+        for (int i = 0; i < sequence.length(); i++)
+        {
+            fanOut.addCode(KmerEncoder.baseCode(sequence.charAt(i)));
+        }
+        fanOut.endSequence();
+
+        for (int length : new int[] {3, 5})
+        {
+            List<Long> expected = new ArrayList<Long>();
+            new KmerEncoder(length, expected::add).encode(sequence);
+            assertEquals(expected, length == 3 ? threes : fives);
+        }
+        assertEquals(11, fives.size());
+    }
+}
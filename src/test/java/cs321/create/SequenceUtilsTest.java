@@ -33,6 +33,21 @@ public class SequenceUtilsTest
         assertEquals(testStrings[3], SequenceUtils.longToDNAString(testLongs[3], 6));
 	}
 
+    /**
+     * Tester for converting sequences whose length is not a multiple of 4, up to 31 bases
+     * @throws Exception - Throws exeption if there is an error in converting values
+     */
+    @Test
+    public void longToDNAStringLengthsTest() throws Exception
+    {
+        String bases = "tgcactgaacgtttacgcatgcaagtcagct";
+        for (int length = 1; length <= bases.length(); length++)
+        {
+            String expected = bases.substring(0, length);
+            assertEquals(expected, SequenceUtils.longToDNAString(SequenceUtils.DNAStringToLong(expected), length));
+        }
+	}
+
     /**
      * Tester for checking if conversion from DNA String to long int sequence works
      * @throws Exception - Throws exception if there is an error in converting values
@@ -49,6 +64,29 @@ public class SequenceUtilsTest
         }
 	}
 
+    /**
+     * Tester for checking that a sequence with an ambiguous or unknown base is
+     * rejected instead of being read as other bases
+     * @throws Exception - Throws exception if there is an error in converting values
+     */
+    @Test
+    public void DNAStringToLongInvalidBaseTest() throws Exception
+    {
+        String[] invalid = {"acgnt", "acg-t", "ac\u0163t", "acgt "};
+        for (String sequence : invalid)
+        {
+            try
+            {
+                SequenceUtils.DNAStringToLong(sequence);
+                fail(sequence + " was accepted");
+            }
+            catch (IllegalArgumentException e)
+            {
+            }
+        }
+        assertEquals(SequenceUtils.DNAStringToLong("acgat"), SequenceUtils.DNAStringToLong("ACGAT"));
+	}
+
     /**
      * Test for checking if conversion from long int to complement sequence works
      * @throws Exception - Throws exception if there is an error in converting values
@@ -56,7 +94,7 @@ public class SequenceUtilsTest
 	@Test
 	public void getComplementTest() throws Exception
 	{
-        long[] targetLong = {11111111, 00000000, 10101010, 1010101, 11001001}; //testing aaaa, tttt, cccc, gggg, atcg
+        long[] targetLong = {255, 0, 170, 85, 99}; //testing aaaa, tttt, cccc, gggg, atcg -> tttt, aaaa, gggg, cccc, cgat
         long[] testLong = {0, 255, 85, 170, 54};
 
 
@@ -66,4 +104,44 @@ public class SequenceUtilsTest
         }
 
 	}
+
+    /**
+     * Test for checking the reverse complement of every length against reversing and complementing the string
+     * @throws Exception - Throws exception if there is an error in converting values
+     */
+    @Test
+    public void reverseComplementTest() throws Exception
+    {
+        String bases = "gattacacgtttgcaaacgcatgcatcaggt";
+        String complements = "ctaatgtgcaaacgtttgcgtacgtagtcca";
+        for (int length = 1; length <= bases.length(); length++)
+        {
+            long sequence = SequenceUtils.DNAStringToLong(bases.substring(0, length));
+            String reverse = new StringBuilder(complements.substring(0, length)).reverse().toString();
+            assertEquals(SequenceUtils.DNAStringToLong(complements.substring(0, length)), SequenceUtils.complement(sequence, length));
+            assertEquals(SequenceUtils.DNAStringToLong(reverse), SequenceUtils.reverseComplement(sequence, length));
+            assertEquals(Math.min(sequence, SequenceUtils.DNAStringToLong(reverse)), SequenceUtils.canonical(sequence, length));
+        }
+    }
+
+    /**
+     * Test for checking that only sequences equal to their reverse complement are palindromes
+     * @throws Exception - Throws exception if there is an error in converting values
+     */
+    @Test
+    public void isPalindromeTest() throws Exception
+    {
+        String[] palindromes = {"at", "acgt", "gaattc", "ggatcc"};
+        String[] others = {"aa", "acga", "gaattg", "aca", "gattc"};
+        for (String palindrome : palindromes)
+        {
+            long sequence = SequenceUtils.DNAStringToLong(palindrome);
+            assertTrue(palindrome, SequenceUtils.isPalindrome(sequence, palindrome.length()));
+            assertEquals(sequence, SequenceUtils.getComplement(sequence, palindrome.length()));
+        }
+        for (String other : others)
+        {
+            assertFalse(other, SequenceUtils.isPalindrome(SequenceUtils.DNAStringToLong(other), other.length()));
+        }
+    }
 }